@@ -37,7 +37,44 @@ CREATE TABLE products (
   created_at       TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
   updated_at       TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (id),
-  KEY idx_products_active_created (is_active, created_at)
+  KEY idx_products_active_created (is_active, created_at, id),
+  KEY idx_products_active_price (is_active, price_cents, id),
+  KEY idx_products_active_name (is_active, name, id)
+) ENGINE=InnoDB;
+
+-- -------------------------------------------------------------------
+-- Tabla: products_archive
+-- Productos inactivos por más de product.archive.inactive-days se mueven
+-- aquí en lotes (product-service) para mantener pequeña la tabla products.
+-- Conserva el id original para lecturas históricas. Solo se archivan productos
+-- sin filas en order_items ni cart_items: fk_order_items_product y
+-- fk_cart_items_product son ON DELETE RESTRICT y se mantienen.
+-- -------------------------------------------------------------------
+CREATE TABLE products_archive (
+  id               BIGINT  NOT NULL,
+  name             VARCHAR(150)    NOT NULL,
+  description      TEXT            NOT NULL,
+  image_url        VARCHAR(500)    NOT NULL,
+  price_cents      INT     NOT NULL,
+  currency         CHAR(3)         NOT NULL DEFAULT 'GTQ',
+  is_active        TINYINT(1)      NOT NULL DEFAULT 0,
+  created_at       TIMESTAMP       NOT NULL,
+  updated_at       TIMESTAMP       NOT NULL,
+  archived_at      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id),
+  KEY idx_products_archive_archived (archived_at)
+) ENGINE=InnoDB;
+
+-- -------------------------------------------------------------------
+-- Tabla: product_price_changes
+-- Outbox de cambios de precio pendientes de notificar a cart-service
+-- (product-service). Una fila por producto; se borra al confirmarse.
+-- -------------------------------------------------------------------
+CREATE TABLE product_price_changes (
+  product_id       BIGINT  NOT NULL,
+  price_cents      INT     NOT NULL,
+  changed_at       TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (product_id)
 ) ENGINE=InnoDB;
 
 -- -------------------------------------------------------------------
@@ -49,6 +86,7 @@ CREATE TABLE carts (
   id              BIGINT  NOT NULL AUTO_INCREMENT,
   user_id         BIGINT  NOT NULL,
   status          ENUM('ACTIVE','CHECKED_OUT') NOT NULL DEFAULT 'ACTIVE',
+  version         BIGINT  NOT NULL DEFAULT 0,  -- bloqueo optimista (cart-service)
   created_at      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
   updated_at      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   -- Columna generada para asegurar un único carrito ACTIVE por usuario
@@ -74,6 +112,7 @@ CREATE TABLE cart_items (
   quantity           INT     NOT NULL DEFAULT 1,
   unit_price_cents   INT     NOT NULL,
   line_total_cents   INT     NOT NULL,
+  version            BIGINT  NOT NULL DEFAULT 0,  -- bloqueo optimista (cart-service)
   created_at         TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
   updated_at         TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (id),
@@ -94,6 +133,20 @@ CREATE TABLE cart_items (
   )
 ) ENGINE=InnoDB;
 
+-- -------------------------------------------------------------------
+-- Tabla: cart_cleanup_checkpoints
+-- Avance de la limpieza de carritos por rangos de ID (permite reanudar).
+-- -------------------------------------------------------------------
+CREATE TABLE cart_cleanup_checkpoints (
+  job_name           VARCHAR(50)     NOT NULL,
+  run_started_at     TIMESTAMP       NOT NULL,
+  last_processed_id  BIGINT  NOT NULL,
+  max_id             BIGINT  NOT NULL,
+  completed          TINYINT(1)      NOT NULL DEFAULT 0,
+  updated_at         TIMESTAMP       NOT NULL,
+  PRIMARY KEY (job_name)
+) ENGINE=InnoDB;
+
 -- -------------------------------------------------------------------
 -- Tabla: orders
 -- Se crea al hacer checkout y se devuelve el ID de la orden.
@@ -105,8 +158,10 @@ CREATE TABLE orders (
   status          ENUM('CREATED','PAID','CANCELLED') NOT NULL DEFAULT 'CREATED',
   total_cents     INT     NOT NULL,
   currency        CHAR(3)         NOT NULL DEFAULT 'GTQ',
+  idempotency_key VARCHAR(100)    NULL,  -- clave del cliente; un checkout repetido devuelve la misma orden
   created_at      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id),
+  UNIQUE KEY idx_orders_idempotency_key (idempotency_key),
   KEY fk_orders_user (user_id),
   KEY fk_orders_cart (cart_id),
   CONSTRAINT fk_orders_user FOREIGN KEY (user_id)
@@ -147,6 +202,18 @@ CREATE TABLE order_items (
   )
 ) ENGINE=InnoDB;
 
+-- -------------------------------------------------------------------
+-- Tabla: id_generators
+-- Bloques de IDs (de 50 en 50) para orders y order_items (order-service),
+-- así Hibernate puede agrupar los INSERT. Al iniciar, cada fila se mueve
+-- por encima del mayor id existente.
+-- -------------------------------------------------------------------
+CREATE TABLE id_generators (
+  sequence_name   VARCHAR(255)    NOT NULL,  -- 'orders' / 'order_items'
+  next_val        BIGINT  NOT NULL,
+  PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB;
+
 -- -------------------------------------------------------------------
 -- Tabla: refresh_tokens (JWT refresh por sesión)
 -- -------------------------------------------------------------------
@@ -13,13 +13,24 @@ const Home: React.FC = () => {
   const { isAuthenticated } = useAppSelector(state => state.auth)
   const { totalItems } = useAppSelector(state => state.cart)
   
-  const { data: productsResponse, isLoading, error } = useGetProductsQuery()
+  // The API pages by cursor: pages already shown are kept here and the next one is requested with meta.nextCursor
+  const [after, setAfter] = useState<string | undefined>(undefined)
+  const [loadedProducts, setLoadedProducts] = useState<Product[]>([])
+  const { currentData: productsResponse, isLoading, isFetching, error } = useGetProductsQuery(after ? { after } : undefined)
 
   useEffect(() => {
     dispatch(initializeAuth())
   }, [dispatch])
 
-  const products = productsResponse?.data || []
+  const products = [...loadedProducts, ...(productsResponse?.data || [])]
+  const nextCursor = productsResponse?.meta?.nextCursor
+
+  const handleLoadMore = () => {
+    if (nextCursor) {
+      setLoadedProducts(products)
+      setAfter(nextCursor)
+    }
+  }
   console.log("🚀 ~ Home ~ products:", products)
 
 
@@ -33,7 +44,7 @@ const Home: React.FC = () => {
     )
   }
 
-  if (error) {
+  if (error && products.length === 0) {
     return (
       <div className="container py-8">
         <div className="text-center">
@@ -77,6 +88,13 @@ const Home: React.FC = () => {
                 />
               ))}
             </div>
+            {(nextCursor || isFetching) && (
+              <div className="load-more">
+                <button className="btn-primary" onClick={handleLoadMore} disabled={isFetching}>
+                  {isFetching ? 'Cargando productos...' : 'Cargar más productos'}
+                </button>
+              </div>
+            )}
         </div>
       </section>
     </div>
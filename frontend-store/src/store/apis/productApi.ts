@@ -10,10 +10,11 @@ export const productApiEndpoints = baseProductApi.injectEndpoints({
       category?: string;
       minPrice?: number;
       maxPrice?: number;
-      page?: number;
+      after?: string;
       size?: number;
       sortBy?: string;
       sortDirection?: 'asc' | 'desc';
+      sort?: 'price_asc' | 'price_desc' | 'name' | 'newest';
     } | void>({
       query: (params) => {
         const searchParams = new URLSearchParams()
@@ -19,6 +19,7 @@ export interface Meta {
   service: string
   version: string
   durationMs: number
+  nextCursor?: string
 }
 
 export interface ApiError {
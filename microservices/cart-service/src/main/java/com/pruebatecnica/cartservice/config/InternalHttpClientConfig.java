@@ -0,0 +1,16 @@
+package com.pruebatecnica.cartservice.config;
+
+import com.pruebatecnica.serviceclient.InternalHttpClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class InternalHttpClientConfig {
+
+    // Shared by every client of other services so they all reuse the same pooled connections
+    @Bean
+    public RestTemplate internalRestTemplate(InternalHttpClient internalHttpClient) {
+        return internalHttpClient.getRestTemplate();
+    }
+}
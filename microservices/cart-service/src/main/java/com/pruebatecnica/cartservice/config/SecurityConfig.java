@@ -35,6 +35,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/carts/items").permitAll()              // POST add to cart
                         .requestMatchers("/api/carts/items/**").permitAll()          // PUT/DELETE cart items
                         .requestMatchers("/api/carts/health").permitAll()            // Health check
+                        .requestMatchers("/internal/**").permitAll()                 // Service calls, checked against X-Internal-Token
                         .requestMatchers("/error").permitAll()                       // Error handling
                         .requestMatchers("/actuator/**").permitAll()                 // Actuator endpoints
                         
@@ -0,0 +1,93 @@
+package com.pruebatecnica.cartservice.controller;
+
+import com.pruebatecnica.cartservice.dto.AbandonedCartReportDto;
+import com.pruebatecnica.cartservice.dto.ApiResponse;
+import com.pruebatecnica.cartservice.service.AbandonedCartAggregator;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// Reports served from the event-log rollups; these endpoints never query the cart tables
+@RestController
+@RequestMapping("/api/carts/analytics")
+@RequiredArgsConstructor
+@Slf4j
+public class CartAnalyticsController {
+    
+    private static final int MAX_HOURS = 720;
+    private static final int MAX_TOP = 100;
+    
+    private final AbandonedCartAggregator aggregator;
+    
+    @GetMapping("/abandoned")
+    public ResponseEntity<ApiResponse<AbandonedCartReportDto>> getAbandonedCartReport(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "10") int top,
+            HttpServletRequest request) {
+        
+        try {
+            if (request.getHeader("X-User-Id") == null) {
+                ApiResponse<AbandonedCartReportDto> response = ApiResponse.<AbandonedCartReportDto>builder()
+                        .success(false)
+                        .httpStatus(HttpStatus.UNAUTHORIZED.value())
+                        .appCode("AUTHENTICATION_REQUIRED")
+                        .message("Se requiere autenticación para consultar los reportes")
+                        .build();
+                
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+            
+            if (!aggregator.isEnabled()) {
+                ApiResponse<AbandonedCartReportDto> response = ApiResponse.<AbandonedCartReportDto>builder()
+                        .success(false)
+                        .httpStatus(HttpStatus.SERVICE_UNAVAILABLE.value())
+                        .appCode("ANALYTICS_DISABLED")
+                        .message("Los reportes de carritos no están habilitados")
+                        .build();
+                
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+            
+            if (hours < 1 || hours > MAX_HOURS || top < 1 || top > MAX_TOP) {
+                throw new IllegalArgumentException("Parámetros de reporte inválidos (hours: 1-" + MAX_HOURS + ", top: 1-" + MAX_TOP + ")");
+            }
+            
+            ApiResponse<AbandonedCartReportDto> response = ApiResponse.<AbandonedCartReportDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("ABANDONED_CART_REPORT")
+                    .message("Reporte de carritos abandonados obtenido exitosamente")
+                    .data(aggregator.report(hours, top))
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid abandoned cart report request: {}", e.getMessage());
+            
+            ApiResponse<AbandonedCartReportDto> response = ApiResponse.<AbandonedCartReportDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("ANALYTICS_REPORT_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("Error building abandoned cart report: {}", e.getMessage());
+            
+            ApiResponse<AbandonedCartReportDto> response = ApiResponse.<AbandonedCartReportDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("ANALYTICS_REPORT_ERROR")
+                    .message("Error al obtener el reporte de carritos abandonados")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
@@ -2,12 +2,23 @@ package com.pruebatecnica.cartservice.controller;
 
 import com.pruebatecnica.cartservice.dto.AddToCartRequest;
 import com.pruebatecnica.cartservice.dto.ApiResponse;
+import com.pruebatecnica.cartservice.dto.CartBatchRequest;
+import com.pruebatecnica.cartservice.dto.CartDeltaDto;
 import com.pruebatecnica.cartservice.dto.CartDto;
+import com.pruebatecnica.cartservice.dto.CartRevalidationDto;
+import com.pruebatecnica.cartservice.dto.CheckoutRequest;
+import com.pruebatecnica.cartservice.dto.CheckoutResultDto;
+import com.pruebatecnica.cartservice.service.CartMutationExecutor;
 import com.pruebatecnica.cartservice.service.CartService;
+import com.pruebatecnica.cartservice.service.CheckoutPendingException;
+import com.pruebatecnica.cartservice.service.CheckoutService;
+import com.pruebatecnica.cartservice.service.WriteBehindCartStore;
+import com.pruebatecnica.serviceclient.ProductServiceUnavailableException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,10 +30,14 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
     
     private final CartService cartService;
+    private final WriteBehindCartStore cartStore;
+    private final CartMutationExecutor mutationExecutor;
+    private final CheckoutService checkoutService;
     
     @GetMapping
     public ResponseEntity<ApiResponse<CartDto>> getCart(
             @RequestParam(required = false) String sessionId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             HttpServletRequest request) {
         
         try {
@@ -35,6 +50,26 @@ public class CartController {
             
             log.info("Getting cart for sessionId: {}, userId: {}", sessionId, userId);
             
+            // The write-behind view has unflushed changes the row version doesn't reflect, so no ETags there
+            if (cartStore.isEnabled()) {
+                ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
+                        .success(true)
+                        .httpStatus(HttpStatus.OK.value())
+                        .appCode("CART_RETRIEVED")
+                        .message("Carrito obtenido exitosamente")
+                        .data(cartStore.getCart(sessionId, userId))
+                        .build();
+                
+                return ResponseEntity.ok(response);
+            }
+            
+            if (ifNoneMatch != null) {
+                String currentETag = cartService.getCartETag(sessionId, userId);
+                if (currentETag != null && currentETag.equals(ifNoneMatch.trim())) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+                }
+            }
+            
             CartDto cart = cartService.getCart(sessionId, userId);
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
@@ -45,7 +80,8 @@ public class CartController {
                     .data(cart)
                     .build();
             
-            return ResponseEntity.ok(response);
+            String eTag = cartService.eTagOf(cart.getId(), cart.getVersion());
+            return eTag != null ? ResponseEntity.ok().eTag(eTag).body(response) : ResponseEntity.ok(response);
             
         } catch (Exception e) {
             log.error("Error getting cart: {}", e.getMessage());
@@ -77,7 +113,10 @@ public class CartController {
             log.info("Adding to cart - ProductId: {}, SessionId: {}, UserId: {}, Quantity: {}", 
                     request.getProductId(), request.getSessionId(), userId, request.getQuantity());
             
-            CartDto cart = cartService.addToCart(request, userId);
+            CartDto cart = cartStore.isEnabled()
+                    ? cartStore.addToCart(request, userId)
+                    : mutationExecutor.execute("add", request.getSessionId(), userId,
+                            () -> cartService.addToCart(request, userId));
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
                     .success(true)
@@ -101,6 +140,9 @@ public class CartController {
             
             return ResponseEntity.badRequest().body(response);
             
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("adding to cart", e);
+            
         } catch (Exception e) {
             log.error("Unexpected error adding to cart: {}", e.getMessage());
             
@@ -115,6 +157,128 @@ public class CartController {
         }
     }
     
+    // Same as addToCart, but answers with the changed line and the new totals only (?view=delta)
+    @PostMapping(value = "/items", params = "view=delta")
+    public ResponseEntity<ApiResponse<CartDeltaDto>> addToCartDelta(
+            @Valid @RequestBody AddToCartRequest request,
+            HttpServletRequest httpRequest) {
+        
+        try {
+            Long userId = getUserIdFromRequest(httpRequest);
+            
+            // Generate sessionId if not provided and user is anonymous
+            if (request.getSessionId() == null && userId == null) {
+                request.setSessionId(cartService.generateSessionId());
+            }
+            
+            log.info("Adding to cart (delta) - ProductId: {}, SessionId: {}, UserId: {}, Quantity: {}", 
+                    request.getProductId(), request.getSessionId(), userId, request.getQuantity());
+            
+            CartDeltaDto delta = cartStore.isEnabled()
+                    ? CartDeltaDto.from(cartStore.addToCart(request, userId), request.getProductId())
+                    : mutationExecutor.execute("add", request.getSessionId(), userId,
+                            () -> cartService.addToCartDelta(request, userId));
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("ITEM_ADDED_TO_CART")
+                    .message("Producto agregado al carrito exitosamente")
+                    .data(delta)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error adding to cart: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CART_ADD_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("adding to cart", e);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error adding to cart: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_ADD_ERROR")
+                    .message("Error al agregar producto al carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    // Applies a list of add/set/remove operations in one transaction (restore saved lists, "buy again")
+    @PostMapping("/items/batch")
+    public ResponseEntity<ApiResponse<CartDto>> applyCartOperations(
+            @Valid @RequestBody CartBatchRequest request,
+            HttpServletRequest httpRequest) {
+        
+        try {
+            Long userId = getUserIdFromRequest(httpRequest);
+            
+            // Generate sessionId if not provided and user is anonymous
+            if (request.getSessionId() == null && userId == null) {
+                request.setSessionId(cartService.generateSessionId());
+            }
+            
+            log.info("Applying {} cart operations - SessionId: {}, UserId: {}", 
+                    request.getOperations().size(), request.getSessionId(), userId);
+            
+            CartDto cart = cartStore.isEnabled()
+                    ? cartStore.applyOperations(request.getSessionId(), userId, request.getOperations())
+                    : mutationExecutor.execute("batch", request.getSessionId(), userId,
+                            () -> cartService.applyOperations(request.getSessionId(), userId, request.getOperations()));
+            
+            ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("CART_BATCH_APPLIED")
+                    .message("Carrito actualizado exitosamente")
+                    .data(cart)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error applying cart operations: {}", e.getMessage());
+            
+            ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CART_BATCH_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("applying cart operations", e);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error applying cart operations: {}", e.getMessage());
+            
+            ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_BATCH_ERROR")
+                    .message("Error al actualizar el carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     @PutMapping("/items/{productId}")
     public ResponseEntity<ApiResponse<CartDto>> updateCartItem(
             @PathVariable Long productId,
@@ -128,7 +292,10 @@ public class CartController {
             log.info("Updating cart item - ProductId: {}, SessionId: {}, UserId: {}, Quantity: {}", 
                     productId, sessionId, userId, quantity);
             
-            CartDto cart = cartService.updateCartItem(sessionId, userId, productId, quantity);
+            CartDto cart = cartStore.isEnabled()
+                    ? cartStore.updateCartItem(sessionId, userId, productId, quantity)
+                    : mutationExecutor.execute("update", sessionId, userId,
+                            () -> cartService.updateCartItem(sessionId, userId, productId, quantity));
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
                     .success(true)
@@ -166,6 +333,60 @@ public class CartController {
         }
     }
     
+    @PutMapping(value = "/items/{productId}", params = "view=delta")
+    public ResponseEntity<ApiResponse<CartDeltaDto>> updateCartItemDelta(
+            @PathVariable Long productId,
+            @RequestParam Integer quantity,
+            @RequestParam(required = false) String sessionId,
+            HttpServletRequest request) {
+        
+        try {
+            Long userId = getUserIdFromRequest(request);
+            
+            log.info("Updating cart item (delta) - ProductId: {}, SessionId: {}, UserId: {}, Quantity: {}", 
+                    productId, sessionId, userId, quantity);
+            
+            CartDeltaDto delta = cartStore.isEnabled()
+                    ? CartDeltaDto.from(cartStore.updateCartItem(sessionId, userId, productId, quantity), productId)
+                    : mutationExecutor.execute("update", sessionId, userId,
+                            () -> cartService.updateCartItemDelta(sessionId, userId, productId, quantity));
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("CART_ITEM_UPDATED")
+                    .message("Producto actualizado en el carrito")
+                    .data(delta)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error updating cart item: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CART_UPDATE_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error updating cart item: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_UPDATE_ERROR")
+                    .message("Error al actualizar producto en el carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     @DeleteMapping("/items/{productId}")
     public ResponseEntity<ApiResponse<CartDto>> removeFromCart(
             @PathVariable Long productId,
@@ -178,7 +399,10 @@ public class CartController {
             log.info("Removing from cart - ProductId: {}, SessionId: {}, UserId: {}", 
                     productId, sessionId, userId);
             
-            CartDto cart = cartService.removeFromCart(sessionId, userId, productId);
+            CartDto cart = cartStore.isEnabled()
+                    ? cartStore.removeFromCart(sessionId, userId, productId)
+                    : mutationExecutor.execute("remove", sessionId, userId,
+                            () -> cartService.removeFromCart(sessionId, userId, productId));
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
                     .success(true)
@@ -216,6 +440,59 @@ public class CartController {
         }
     }
     
+    @DeleteMapping(value = "/items/{productId}", params = "view=delta")
+    public ResponseEntity<ApiResponse<CartDeltaDto>> removeFromCartDelta(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String sessionId,
+            HttpServletRequest request) {
+        
+        try {
+            Long userId = getUserIdFromRequest(request);
+            
+            log.info("Removing from cart (delta) - ProductId: {}, SessionId: {}, UserId: {}", 
+                    productId, sessionId, userId);
+            
+            CartDeltaDto delta = cartStore.isEnabled()
+                    ? CartDeltaDto.from(cartStore.removeFromCart(sessionId, userId, productId), productId)
+                    : mutationExecutor.execute("remove", sessionId, userId,
+                            () -> cartService.removeFromCartDelta(sessionId, userId, productId));
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("ITEM_REMOVED_FROM_CART")
+                    .message("Producto removido del carrito")
+                    .data(delta)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error removing from cart: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CART_REMOVE_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error removing from cart: {}", e.getMessage());
+            
+            ApiResponse<CartDeltaDto> response = ApiResponse.<CartDeltaDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_REMOVE_ERROR")
+                    .message("Error al remover producto del carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     @DeleteMapping
     public ResponseEntity<ApiResponse<Void>> clearCart(
             @RequestParam(required = false) String sessionId,
@@ -226,7 +503,11 @@ public class CartController {
             
             log.info("Clearing cart - SessionId: {}, UserId: {}", sessionId, userId);
             
-            cartService.clearCart(sessionId, userId);
+            if (cartStore.isEnabled()) {
+                cartStore.clearCart(sessionId, userId);
+            } else {
+                mutationExecutor.run("clear", sessionId, userId, () -> cartService.clearCart(sessionId, userId));
+            }
             
             ApiResponse<Void> response = ApiResponse.<Void>builder()
                     .success(true)
@@ -251,46 +532,203 @@ public class CartController {
         }
     }
     
-    // This endpoint requires JWT authentication - will be used when proceeding to checkout
-    @PostMapping("/checkout")
-    public ResponseEntity<ApiResponse<CartDto>> proceedToCheckout(
-            @RequestParam(required = false) String sessionId,
+    // Called by the client once right after login to fold its anonymous cart into the user's cart
+    @PostMapping("/merge")
+    public ResponseEntity<ApiResponse<CartDto>> mergeCart(
+            @RequestParam String sessionId,
             HttpServletRequest request) {
         
         try {
             Long userId = getUserIdFromRequest(request);
             
-            // This endpoint requires authentication
             if (userId == null) {
                 ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
                         .success(false)
                         .httpStatus(HttpStatus.UNAUTHORIZED.value())
                         .appCode("AUTHENTICATION_REQUIRED")
-                        .message("Se requiere autenticación para proceder al checkout")
+                        .message("Se requiere autenticación para combinar el carrito")
                         .build();
                 
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
             }
             
-            log.info("Proceeding to checkout - SessionId: {}, UserId: {}", sessionId, userId);
+            log.info("Merging cart - SessionId: {}, UserId: {}", sessionId, userId);
             
-            // TODO: Implement checkout logic - integrate with order service
-            CartDto cart = cartService.getCart(sessionId, userId);
+            // Both carts must be persisted before the set-based merge runs
+            cartStore.flushCart(sessionId, null);
+            cartStore.flushCart(sessionId, userId);
+            CartDto cart = mutationExecutor.execute("merge", sessionId, userId,
+                    () -> cartService.mergeSessionCart(sessionId, userId));
+            cartStore.evict(sessionId, null);
+            cartStore.evict(sessionId, userId);
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
                     .success(true)
                     .httpStatus(HttpStatus.OK.value())
-                    .appCode("CHECKOUT_READY")
-                    .message("Listo para proceder al checkout")
+                    .appCode("CART_MERGED")
+                    .message("Carrito combinado exitosamente")
                     .data(cart)
                     .build();
             
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
-            log.error("Error proceeding to checkout: {}", e.getMessage());
+            log.error("Error merging cart: {}", e.getMessage());
             
             ApiResponse<CartDto> response = ApiResponse.<CartDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_MERGE_ERROR")
+                    .message("Error al combinar el carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    // Refreshes frozen line prices against the catalog and reports what changed
+    @PostMapping("/revalidate")
+    public ResponseEntity<ApiResponse<CartRevalidationDto>> revalidateCart(
+            @RequestParam(required = false) String sessionId,
+            HttpServletRequest request) {
+        
+        try {
+            Long userId = getUserIdFromRequest(request);
+            
+            log.info("Revalidating cart prices - SessionId: {}, UserId: {}", sessionId, userId);
+            
+            cartStore.flushCart(sessionId, userId);
+            CartRevalidationDto revalidation = mutationExecutor.execute("revalidate", sessionId, userId,
+                    () -> cartService.revalidatePrices(sessionId, userId));
+            cartStore.evict(sessionId, userId);
+            
+            ApiResponse<CartRevalidationDto> response = ApiResponse.<CartRevalidationDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("CART_REVALIDATED")
+                    .message(revalidation.hasChanges()
+                            ? "Algunos productos del carrito cambiaron"
+                            : "Carrito validado exitosamente")
+                    .data(revalidation)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error revalidating cart: {}", e.getMessage());
+            
+            ApiResponse<CartRevalidationDto> response = ApiResponse.<CartRevalidationDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CART_REVALIDATE_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("revalidating cart", e);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error revalidating cart: {}", e.getMessage());
+            
+            ApiResponse<CartRevalidationDto> response = ApiResponse.<CartRevalidationDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_REVALIDATE_ERROR")
+                    .message("Error al validar el carrito")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    // This endpoint requires JWT authentication: converts the cart into an order in a single call
+    @PostMapping("/checkout")
+    public ResponseEntity<ApiResponse<CheckoutResultDto>> proceedToCheckout(
+            @RequestParam(required = false) String sessionId,
+            @Valid @RequestBody(required = false) CheckoutRequest checkoutRequest,
+            HttpServletRequest request) {
+        
+        try {
+            Long userId = getUserIdFromRequest(request);
+            
+            // This endpoint requires authentication
+            if (userId == null) {
+                ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
+                        .success(false)
+                        .httpStatus(HttpStatus.UNAUTHORIZED.value())
+                        .appCode("AUTHENTICATION_REQUIRED")
+                        .message("Se requiere autenticación para proceder al checkout")
+                        .build();
+                
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+            
+            log.info("Proceeding to checkout - SessionId: {}, UserId: {}", sessionId, userId);
+            
+            // Pending in-memory mutations must reach the database before the order reads the cart
+            cartStore.flushBeforeCheckout(sessionId, userId);
+            
+            String userEmail = request.getHeader("X-User-Email");
+            CheckoutResultDto result = mutationExecutor.execute("checkout", sessionId, userId,
+                    () -> checkoutService.checkout(sessionId, userId, userEmail, checkoutRequest));
+            cartStore.evict(sessionId, userId);
+            
+            if (result.getOrderId() == null) {
+                ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
+                        .success(false)
+                        .httpStatus(HttpStatus.CONFLICT.value())
+                        .appCode("CART_PRICES_CHANGED")
+                        .message("El carrito cambió desde que se agregaron los productos, revísalo antes de confirmar")
+                        .data(result)
+                        .build();
+                
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            
+            ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.CREATED.value())
+                    .appCode("CHECKOUT_COMPLETED")
+                    .message("Orden creada exitosamente")
+                    .data(result)
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Error proceeding to checkout: {}", e.getMessage());
+            
+            ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("CHECKOUT_ERROR")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("during checkout", e);
+            
+        } catch (CheckoutPendingException e) {
+            // The cart stays reserved in CHECKOUT; retrying resumes the same order
+            log.warn("Checkout left pending: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            
+            ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.SERVICE_UNAVAILABLE.value())
+                    .appCode("CHECKOUT_PENDING")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            
+        } catch (Exception e) {
+            log.error("Error proceeding to checkout: {}", e.getMessage());
+            
+            ApiResponse<CheckoutResultDto> response = ApiResponse.<CheckoutResultDto>builder()
                     .success(false)
                     .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
                     .appCode("CHECKOUT_ERROR")
@@ -326,4 +764,18 @@ public class CartController {
         }
         return null;
     }
-}
\ No newline at end of file
+    
+    // Circuit open, bulkhead full or product-service down: answer right away instead of queueing behind it
+    private <T> ResponseEntity<ApiResponse<T>> productServiceUnavailable(String operation, ProductServiceUnavailableException e) {
+        log.warn("Product service unavailable {}: {}", operation, e.getMessage());
+        
+        ApiResponse<T> response = ApiResponse.<T>builder()
+                .success(false)
+                .httpStatus(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .appCode("PRODUCT_SERVICE_UNAVAILABLE")
+                .message(e.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+}
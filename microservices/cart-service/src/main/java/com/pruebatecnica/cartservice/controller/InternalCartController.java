@@ -0,0 +1,76 @@
+package com.pruebatecnica.cartservice.controller;
+
+import com.pruebatecnica.cartservice.dto.ApiResponse;
+import com.pruebatecnica.cartservice.dto.ProductPriceChangeRequest;
+import com.pruebatecnica.cartservice.service.CartPriceSyncService;
+import com.pruebatecnica.serviceclient.InternalToken;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Service-to-service endpoints. They live outside /api/** so the gateway does not route them, and
+// every call must carry the shared X-Internal-Token.
+@RestController
+@RequestMapping("/internal/carts")
+@RequiredArgsConstructor
+@Slf4j
+public class InternalCartController {
+    
+    private final CartPriceSyncService priceSyncService;
+    
+    private final InternalToken internalToken;
+    
+    @PostMapping("/price-changes")
+    public ResponseEntity<ApiResponse<Integer>> applyPriceChanges(
+            @RequestHeader(value = InternalToken.HEADER, required = false) String token,
+            @Valid @RequestBody ProductPriceChangeRequest request) {
+        
+        if (!internalToken.matches(token)) {
+            ApiResponse<Integer> response = ApiResponse.<Integer>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.FORBIDDEN.value())
+                    .appCode("INVALID_INTERNAL_TOKEN")
+                    .message("Acceso no autorizado")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        
+        try {
+            // Duplicates in one notification: the last price wins
+            Map<Long, Integer> prices = new HashMap<>();
+            request.getPrices().forEach(price -> prices.put(price.getProductId(), price.getPriceCents()));
+            
+            log.info("Received price changes for {} products", prices.size());
+            int repriced = priceSyncService.applyPriceChanges(prices);
+            
+            ApiResponse<Integer> response = ApiResponse.<Integer>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("CART_PRICES_SYNCED")
+                    .message("Precios de carritos actualizados")
+                    .data(repriced)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Error applying price changes: {}", e.getMessage());
+            
+            ApiResponse<Integer> response = ApiResponse.<Integer>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("CART_PRICE_SYNC_ERROR")
+                    .message("Error al actualizar precios de carritos")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
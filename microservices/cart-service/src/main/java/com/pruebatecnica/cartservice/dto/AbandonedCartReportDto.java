@@ -0,0 +1,59 @@
+package com.pruebatecnica.cartservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AbandonedCartReportDto {
+    
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime from;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime to;
+    
+    private long createdCarts;
+    private long abandonedCarts;
+    private long completedCarts;
+    private Double valueAtRisk;
+    private Double completedValue;
+    // abandoned / (abandoned + completed) over the window
+    private Double abandonmentRate;
+    private long openCarts;
+    
+    private List<HourlyAbandonment> hourly;
+    private List<AbandonedProduct> topProducts;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HourlyAbandonment {
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime hour;
+        private long createdCarts;
+        private long abandonedCarts;
+        private long completedCarts;
+        private Double valueAtRisk;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AbandonedProduct {
+        private Long productId;
+        private long abandonedCarts;
+        private long quantity;
+        private Double valueAtRisk;
+    }
+}
@@ -0,0 +1,25 @@
+package com.pruebatecnica.cartservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+    
+    @NotEmpty(message = "Las operaciones son requeridas")
+    @Size(max = 200, message = "No se pueden aplicar más de 200 operaciones a la vez")
+    @Valid
+    private List<CartOperationRequest> operations;
+    
+    private String sessionId;
+}
@@ -0,0 +1,51 @@
+package com.pruebatecnica.cartservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Result of a single-line mutation: the touched line plus the new cart totals and version,
+// so clients can patch their local copy instead of receiving the whole cart again
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDeltaDto {
+    
+    private Long cartId;
+    private String sessionId;
+    private Long version;
+    private Integer totalItems;
+    private Double totalPrice;
+    private String currency;
+    
+    // Line after the mutation; null when the product is no longer in the cart
+    private CartItemDto item;
+    private Long removedProductId;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+    
+    public static CartDeltaDto from(CartDto cart, Long productId) {
+        CartItemDto item = cart.getItems().stream()
+                .filter(line -> line.getProductId().equals(productId))
+                .findFirst()
+                .orElse(null);
+        
+        return CartDeltaDto.builder()
+                .cartId(cart.getId())
+                .sessionId(cart.getSessionId())
+                .version(cart.getVersion())
+                .totalItems(cart.getTotalItems())
+                .totalPrice(cart.getTotalPrice())
+                .currency(cart.getCurrency())
+                .item(item)
+                .removedProductId(item == null ? productId : null)
+                .updatedAt(cart.getUpdatedAt())
+                .build();
+    }
+}
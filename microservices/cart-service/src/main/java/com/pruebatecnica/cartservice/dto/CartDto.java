@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class CartDto {
@@ -24,6 +24,9 @@ public class CartDto {
     private String currency;
     private boolean isAnonymous;
     
+    // Row version of the persisted cart; changes on every mutation and backs the ETag of GET /api/carts
+    private Long version;
+    
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime expiresAt;
     
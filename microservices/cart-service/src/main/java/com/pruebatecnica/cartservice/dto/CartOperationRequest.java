@@ -0,0 +1,31 @@
+package com.pruebatecnica.cartservice.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationRequest {
+    
+    @NotNull(message = "Tipo de operación es requerido")
+    private OperationType type;
+    
+    @NotNull(message = "Product ID es requerido")
+    private Long productId;
+    
+    // ADD: units to add (> 0). SET: final quantity (0 removes the line). REMOVE: ignored.
+    @Min(value = 0, message = "Cantidad no puede ser negativa")
+    private Integer quantity;
+    
+    public enum OperationType {
+        ADD,
+        SET,
+        REMOVE
+    }
+}
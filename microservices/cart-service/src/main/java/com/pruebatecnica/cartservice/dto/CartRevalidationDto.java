@@ -0,0 +1,27 @@
+package com.pruebatecnica.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartRevalidationDto {
+    
+    private CartDto cart;
+    
+    // Lines whose frozen price no longer matched the catalog; the cart above already has the new prices
+    private List<PriceChangeDto> priceChanges;
+    
+    // Products that are no longer active; they stay in the cart for the user to remove
+    private List<Long> unavailableProductIds;
+    
+    public boolean hasChanges() {
+        return !priceChanges.isEmpty() || !unavailableProductIds.isEmpty();
+    }
+}
@@ -0,0 +1,27 @@
+package com.pruebatecnica.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutResultDto {
+    
+    private Long cartId;
+    private Long orderId;
+    private String orderNumber;
+    private String orderStatus;
+    private Integer totalItems;
+    private Double total;
+    private String currency;
+    
+    // Set instead of the order fields when revalidation found price changes or unavailable products
+    private List<PriceChangeDto> priceChanges;
+    private List<Long> unavailableProductIds;
+}
@@ -0,0 +1,20 @@
+package com.pruebatecnica.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceChangeDto {
+    
+    private Long productId;
+    private String productName;
+    private Integer quantity;
+    private Double oldPrice;
+    private Double newPrice;
+    private String currency;
+}
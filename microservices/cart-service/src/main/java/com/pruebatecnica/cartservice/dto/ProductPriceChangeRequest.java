@@ -0,0 +1,37 @@
+package com.pruebatecnica.cartservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Price change notification sent by product-service
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPriceChangeRequest {
+    
+    @NotEmpty(message = "La lista de precios no puede estar vacía")
+    private List<@Valid ProductPrice> prices;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductPrice {
+        
+        @NotNull(message = "Product ID es requerido")
+        private Long productId;
+        
+        @NotNull(message = "Precio es requerido")
+        @Min(value = 0, message = "El precio no puede ser negativo")
+        private Integer priceCents;
+    }
+}
@@ -54,6 +54,12 @@ public class Cart {
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
     
+    // Optimistic lock: concurrent entity updates fail instead of overwriting each other;
+    // bulk statements that touch this row increment it as well
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,39 @@
+package com.pruebatecnica.cartservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+// Progress of the chunked cart cleanup, so an interrupted run resumes where it stopped
+@Entity
+@Table(name = "cart_cleanup_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartCleanupCheckpoint {
+    
+    @Id
+    @Column(name = "job_name", length = 50)
+    private String jobName;
+    
+    // Reference time of the run; kept so a resumed run applies the same expiry/cutoff dates
+    @Column(name = "run_started_at", nullable = false)
+    private LocalDateTime runStartedAt;
+    
+    @Column(name = "last_processed_id", nullable = false)
+    private Long lastProcessedId;
+    
+    @Column(name = "max_id", nullable = false)
+    private Long maxId;
+    
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,9 @@
+package com.pruebatecnica.cartservice.repository;
+
+import com.pruebatecnica.cartservice.entity.CartCleanupCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CartCleanupCheckpointRepository extends JpaRepository<CartCleanupCheckpoint, String> {
+}
@@ -2,6 +2,7 @@ package com.pruebatecnica.cartservice.repository;
 
 import com.pruebatecnica.cartservice.entity.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,7 +11,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+public interface CartItemRepository extends JpaRepository<CartItem, Long>, CartItemRepositoryCustom {
     
     List<CartItem> findByCartId(Long cartId);
     
@@ -22,13 +23,11 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     @Query("SELECT ci FROM CartItem ci WHERE ci.cart.userId = :userId AND ci.productId = :productId AND ci.cart.status = 'ACTIVE'")
     Optional<CartItem> findByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
     
-    @Query("SELECT SUM(ci.quantity) FROM CartItem ci WHERE ci.cart.id = :cartId")
-    Integer getTotalItemsByCartId(@Param("cartId") Long cartId);
-    
-    @Query("SELECT SUM(ci.quantity * ci.priceCents) FROM CartItem ci WHERE ci.cart.id = :cartId")
-    Long getTotalPriceCentsByCartId(@Param("cartId") Long cartId);
-    
     void deleteByCartId(Long cartId);
     
     void deleteByCartIdAndProductId(Long cartId, Long productId);
+    
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN :cartIds")
+    int deleteByCartIds(@Param("cartIds") List<Long> cartIds);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.pruebatecnica.cartservice.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CartItemRepositoryCustom {
+    
+    // Inserts the line or adds the quantity to the existing (cart_id, product_id) row; returns the line id
+    Long upsertItem(Long cartId, Long productId, String productName, String productImageUrl,
+                    int quantity, int priceCents, String currency);
+    
+    // Sets new unit prices (line id -> price in cents) for many lines with a single UPDATE statement
+    int updatePrices(Map<Long, Integer> priceCentsByItemId);
+    
+    // Folds every line of one cart into another with a single INSERT ... SELECT: quantities of matching
+    // products are summed (keeping the target's price), other lines are copied
+    int mergeItems(Long sourceCartId, Long targetCartId);
+    
+    // Lines of active carts whose price differs from the new catalog price (product id -> price in cents),
+    // paged by line id; served from idx_cart_items_product with a single statement per page
+    List<RepriceCandidate> findRepriceCandidates(Map<Long, Integer> priceCentsByProductId, long afterItemId, int limit);
+    
+    record RepriceCandidate(Long itemId, Long cartId, Long productId, String sessionId, Long userId, int newPriceCents) {
+    }
+}
\ No newline at end of file
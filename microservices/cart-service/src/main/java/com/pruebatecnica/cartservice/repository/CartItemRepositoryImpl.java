@@ -0,0 +1,118 @@
+package com.pruebatecnica.cartservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class CartItemRepositoryImpl implements CartItemRepositoryCustom {
+    
+    // id = LAST_INSERT_ID(id) makes MySQL report the existing row id when the unique key matches
+    private static final String UPSERT_ITEM_SQL =
+            "INSERT INTO cart_items (cart_id, product_id, product_name, product_image_url, quantity, price_cents, currency, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), quantity = quantity + VALUES(quantity), version = version + 1, updated_at = NOW()";
+    
+    // The derived table lets ON DUPLICATE KEY UPDATE refer to the source row without ambiguity (same table)
+    private static final String MERGE_ITEMS_SQL =
+            "INSERT INTO cart_items (cart_id, product_id, product_name, product_image_url, quantity, price_cents, currency, created_at, updated_at) " +
+            "SELECT ?, src.product_id, src.product_name, src.product_image_url, src.qty, src.price_cents, src.currency, NOW(), NOW() " +
+            "FROM (SELECT product_id, product_name, product_image_url, quantity AS qty, price_cents, currency " +
+            "      FROM cart_items WHERE cart_id = ?) AS src " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + src.qty, version = version + 1, updated_at = NOW()";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Long upsertItem(Long cartId, Long productId, String productName, String productImageUrl,
+                           int quantity, int priceCents, String currency) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(UPSERT_ITEM_SQL, Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, cartId);
+            ps.setLong(2, productId);
+            ps.setString(3, productName);
+            ps.setString(4, productImageUrl);
+            ps.setInt(5, quantity);
+            ps.setInt(6, priceCents);
+            ps.setString(7, currency);
+            return ps;
+        }, keyHolder);
+        
+        // The driver may report two keys when the row was updated (affected rows = 2); the first one is the line id
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.isEmpty()) {
+            return null;
+        }
+        Object id = keys.get(0).values().iterator().next();
+        return id != null ? ((Number) id).longValue() : null;
+    }
+    
+    @Override
+    public int updatePrices(Map<Long, Integer> priceCentsByItemId) {
+        if (priceCentsByItemId.isEmpty()) {
+            return 0;
+        }
+        
+        // UPDATE ... SET price_cents = CASE id WHEN ? THEN ? ... END WHERE id IN (...): one round trip for the whole cart
+        StringBuilder sql = new StringBuilder("UPDATE cart_items SET price_cents = CASE id");
+        List<Object> args = new ArrayList<>();
+        priceCentsByItemId.forEach((itemId, priceCents) -> {
+            sql.append(" WHEN ? THEN ?");
+            args.add(itemId);
+            args.add(priceCents);
+        });
+        sql.append(" END, version = version + 1, updated_at = NOW() WHERE id IN (")
+           .append(String.join(", ", Collections.nCopies(priceCentsByItemId.size(), "?")))
+           .append(")");
+        args.addAll(priceCentsByItemId.keySet());
+        
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+    
+    @Override
+    public int mergeItems(Long sourceCartId, Long targetCartId) {
+        return jdbcTemplate.update(MERGE_ITEMS_SQL, targetCartId, sourceCartId);
+    }
+    
+    @Override
+    public List<RepriceCandidate> findRepriceCandidates(Map<Long, Integer> priceCentsByProductId, long afterItemId, int limit) {
+        if (priceCentsByProductId.isEmpty()) {
+            return List.of();
+        }
+        
+        // New prices are joined in as a derived table so one statement covers every changed product
+        StringBuilder sql = new StringBuilder(
+                "SELECT ci.id, ci.cart_id, ci.product_id, c.session_id, c.user_id, p.price_cents " +
+                "FROM cart_items ci JOIN (");
+        List<Object> args = new ArrayList<>();
+        priceCentsByProductId.forEach((productId, priceCents) -> {
+            sql.append(args.isEmpty() ? "SELECT ? AS product_id, ? AS price_cents" : " UNION ALL SELECT ?, ?");
+            args.add(productId);
+            args.add(priceCents);
+        });
+        sql.append(") p ON p.product_id = ci.product_id " +
+                   "JOIN carts c ON c.id = ci.cart_id " +
+                   "WHERE c.status = 'ACTIVE' AND ci.price_cents <> p.price_cents AND ci.id > ? " +
+                   "ORDER BY ci.id LIMIT ?");
+        args.add(afterItemId);
+        args.add(limit);
+        
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new RepriceCandidate(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getLong(3),
+                rs.getString(4),
+                rs.getObject(5) != null ? rs.getLong(5) : null,
+                rs.getInt(6)), args.toArray());
+    }
+}
\ No newline at end of file
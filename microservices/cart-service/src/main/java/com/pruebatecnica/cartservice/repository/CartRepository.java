@@ -1,6 +1,7 @@
 package com.pruebatecnica.cartservice.repository;
 
 import com.pruebatecnica.cartservice.entity.Cart;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +20,13 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     
     Optional<Cart> findByUserIdAndStatus(Long userId, Cart.CartStatus status);
     
+    // Header-only reads (no items) for delta responses and ETag checks
+    Optional<CartTotals> findTotalsById(Long id);
+    
+    Optional<CartTotals> findTotalsBySessionIdAndStatus(String sessionId, Cart.CartStatus status);
+    
+    Optional<CartTotals> findTotalsByUserIdAndStatus(Long userId, Cart.CartStatus status);
+    
     @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.sessionId = :sessionId AND c.status = :status")
     Optional<Cart> findBySessionIdAndStatusWithItems(@Param("sessionId") String sessionId, @Param("status") Cart.CartStatus status);
     
@@ -26,13 +35,40 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     
     List<Cart> findByExpiresAtBeforeAndStatus(LocalDateTime dateTime, Cart.CartStatus status);
     
+    // Served by idx_carts_status_updated
+    List<Cart> findByStatusAndUpdatedAtBeforeOrderByUpdatedAt(Cart.CartStatus status, LocalDateTime before, Pageable pageable);
+    
+    // Cleanup works on primary-key ranges so each statement only locks a bounded slice of the table. The due
+    // carts are locked (FOR UPDATE) so exactly the ids returned are the ones markExpiredByIds then expires
+    @Query(value = "SELECT id FROM carts WHERE id BETWEEN :fromId AND :toId " +
+                   "AND status = 'ACTIVE' AND expires_at < :now FOR UPDATE",
+           nativeQuery = true)
+    List<Long> lockExpirableIdsInRange(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT c.id, c.expiresAt FROM Cart c WHERE c.id BETWEEN :fromId AND :toId " +
+           "AND c.status = 'ACTIVE' AND c.expiresAt IS NOT NULL")
+    List<Object[]> findActiveExpiriesInRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    // Of the given carts, locks (FOR UPDATE) the ones still due so the caller learns exactly which ids
+    // markExpiredByIds is about to expire
+    @Query(value = "SELECT id FROM carts WHERE id IN (:ids) AND status = 'ACTIVE' AND expires_at <= :now FOR UPDATE",
+           nativeQuery = true)
+    List<Long> lockExpirableByIds(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+    
+    // Re-checks status and expiresAt so entries for converted or extended carts are no-ops
     @Modifying
-    @Query("UPDATE Cart c SET c.status = 'EXPIRED', c.updatedAt = CURRENT_TIMESTAMP WHERE c.expiresAt < :now AND c.status = 'ACTIVE'")
-    int markExpiredCarts(@Param("now") LocalDateTime now);
+    @Query("UPDATE Cart c SET c.status = 'EXPIRED', c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id IN :ids AND c.status = 'ACTIVE' AND c.expiresAt <= :now")
+    int markExpiredByIds(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT c.id FROM Cart c WHERE c.id BETWEEN :fromId AND :toId " +
+           "AND c.status IN ('EXPIRED', 'ABANDONED') AND c.updatedAt < :cutoffDate")
+    List<Long> findDeletableIdsInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                       @Param("cutoffDate") LocalDateTime cutoffDate);
     
     @Modifying
-    @Query("DELETE FROM Cart c WHERE c.status IN ('EXPIRED', 'ABANDONED') AND c.updatedAt < :cutoffDate")
-    int deleteOldCarts(@Param("cutoffDate") LocalDateTime cutoffDate);
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
     
     @Query("SELECT COUNT(c) FROM Cart c WHERE c.userId = :userId AND c.status = 'ACTIVE'")
     long countActiveCartsByUserId(@Param("userId") Long userId);
@@ -42,4 +78,74 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     
     @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.id = :id")
     Optional<Cart> findByIdWithItems(@Param("id") Long id);
+    
+    // Totals are maintained incrementally: each mutation applies its delta atomically in the row
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalItems = c.totalItems + :itemsDelta, " +
+           "c.totalPriceCents = c.totalPriceCents + :priceDeltaCents, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :cartId")
+    int applyTotalsDelta(@Param("cartId") Long cartId, @Param("itemsDelta") int itemsDelta,
+                         @Param("priceDeltaCents") long priceDeltaCents);
+    
+    // Same delta, applied only if nobody changed the cart since it was read at expectedVersion; on success
+    // the caller knows the new totals (read values + delta, version + 1) without reading the row again
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalItems = c.totalItems + :itemsDelta, " +
+           "c.totalPriceCents = c.totalPriceCents + :priceDeltaCents, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :cartId AND c.version = :expectedVersion")
+    int applyTotalsDeltaIfVersion(@Param("cartId") Long cartId, @Param("itemsDelta") int itemsDelta,
+                                  @Param("priceDeltaCents") long priceDeltaCents, @Param("expectedVersion") Long expectedVersion);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalItems = 0, c.totalPriceCents = 0, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP WHERE c.id = :cartId")
+    int resetTotals(@Param("cartId") Long cartId);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.status = :to, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :cartId AND c.status = :from")
+    int transitionStatus(@Param("cartId") Long cartId, @Param("from") Cart.CartStatus from, @Param("to") Cart.CartStatus to);
+    
+    // Anonymous cart adopted by the user who just logged in
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.userId = :userId, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :cartId AND c.userId IS NULL")
+    int assignUser(@Param("cartId") Long cartId, @Param("userId") Long userId);
+    
+    @Query("SELECT MAX(c.id) FROM Cart c")
+    Long findMaxId();
+    
+    // Recomputes totals of specific carts from their lines, e.g. after a set-based price update
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE carts c JOIN (" +
+                   "SELECT ci.cart_id, SUM(ci.quantity) AS items, SUM(ci.quantity * ci.price_cents) AS price_cents " +
+                   "FROM cart_items ci WHERE ci.cart_id IN (:cartIds) GROUP BY ci.cart_id) t " +
+                   "ON t.cart_id = c.id " +
+                   "SET c.total_items = t.items, c.total_price_cents = t.price_cents, c.version = c.version + 1, " +
+                   "c.updated_at = NOW()",
+           nativeQuery = true)
+    int recomputeTotals(@Param("cartIds") Collection<Long> cartIds);
+    
+    // Drift repair for one id range: recomputes totals from cart_items and only touches carts that disagree
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE carts c LEFT JOIN (" +
+                   "SELECT ci.cart_id, SUM(ci.quantity) AS items, SUM(ci.quantity * ci.price_cents) AS price_cents " +
+                   "FROM cart_items ci WHERE ci.cart_id BETWEEN :fromId AND :toId GROUP BY ci.cart_id) t " +
+                   "ON t.cart_id = c.id " +
+                   "SET c.total_items = COALESCE(t.items, 0), c.total_price_cents = COALESCE(t.price_cents, 0), " +
+                   "c.version = c.version + 1 " +
+                   "WHERE c.id BETWEEN :fromId AND :toId AND c.status = 'ACTIVE' " +
+                   "AND (c.total_items <> COALESCE(t.items, 0) OR c.total_price_cents <> COALESCE(t.price_cents, 0))",
+           nativeQuery = true)
+    int reconcileTotals(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    interface CartTotals {
+        Long getId();
+        String getSessionId();
+        Long getVersion();
+        Integer getTotalItems();
+        Long getTotalPriceCents();
+        String getCurrency();
+        LocalDateTime getExpiresAt();
+        LocalDateTime getUpdatedAt();
+    }
 }
\ No newline at end of file
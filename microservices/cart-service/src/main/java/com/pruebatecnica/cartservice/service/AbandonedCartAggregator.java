@@ -0,0 +1,390 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.dto.AbandonedCartReportDto;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Folds the cart event log into hourly abandonment rollups. It keeps the lines of every open cart so that,
+// when a cart expires, its value and products can be attributed to the hour it was abandoned in. State and
+// log offset are snapshotted after every run, so each run only reads new events and folded segments are
+// deleted. Rollups are per instance: each cart-service node reports on the carts it served.
+// A cart whose expiry event never arrives (e.g. dropped by a full event queue) is aged out once it is past
+// its expiry time plus a grace period, and counted as abandoned then, so open carts cannot pile up.
+@Component
+@Slf4j
+public class AbandonedCartAggregator {
+    
+    private static final int SNAPSHOT_MAGIC = 0x43414752; // "CAGR"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final long HOUR_MS = 3_600_000L;
+    
+    private final CartEventLog eventLog;
+    private final Path snapshotPath;
+    
+    private final Map<Long, OpenCart> openCarts = new HashMap<>();
+    private final TreeMap<Long, HourlyRollup> rollups = new TreeMap<>();
+    private long offset;
+    
+    @Value("${cart.analytics.aggregate.batch-size:50000}")
+    private int batchSize;
+    
+    @Value("${cart.analytics.aggregate.retention-hours:720}")
+    private int retentionHours;
+    
+    @Value("${cart.analytics.aggregate.open-cart-grace-ms:3600000}")
+    private long openCartGraceMs;
+    
+    // Same TTL CartService gives new carts; a cart expires that long after it is created
+    @Value("${cart.session.expiration:2592000000}")
+    private long cartTtlMs;
+    
+    public AbandonedCartAggregator(CartEventLog eventLog,
+                                   @Value("${cart.analytics.aggregate.snapshot-path:./data/cart-analytics.snapshot}") String snapshotPath) {
+        this.eventLog = eventLog;
+        this.snapshotPath = Path.of(snapshotPath);
+    }
+    
+    @PostConstruct
+    public synchronized void loadSnapshot() {
+        if (!eventLog.isEnabled() || !Files.exists(snapshotPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version != 1 && version != SNAPSHOT_VERSION) {
+                log.warn("Ignoring incompatible cart analytics snapshot at {}", snapshotPath);
+                return;
+            }
+            offset = in.readLong();
+            int carts = in.readInt();
+            // Version 1 did not record expiry times: those carts get a full TTL from now
+            long defaultExpiresAt = System.currentTimeMillis() + cartTtlMs;
+            for (int i = 0; i < carts; i++) {
+                long cartId = in.readLong();
+                OpenCart cart = new OpenCart(version == 1 ? defaultExpiresAt : in.readLong());
+                int lineCount = in.readInt();
+                for (int j = 0; j < lineCount; j++) {
+                    cart.lines.put(in.readLong(), new Line(in.readInt(), in.readInt()));
+                }
+                openCarts.put(cartId, cart);
+            }
+            int hours = in.readInt();
+            for (int i = 0; i < hours; i++) {
+                long hour = in.readLong();
+                HourlyRollup rollup = new HourlyRollup();
+                rollup.created = in.readLong();
+                rollup.abandoned = in.readLong();
+                rollup.abandonedValueCents = in.readLong();
+                rollup.completed = in.readLong();
+                rollup.completedValueCents = in.readLong();
+                int products = in.readInt();
+                for (int j = 0; j < products; j++) {
+                    rollup.products.put(in.readLong(), new long[]{in.readLong(), in.readLong(), in.readLong()});
+                }
+                rollups.put(hour, rollup);
+            }
+            log.info("Loaded cart analytics snapshot: offset {}, {} open carts, {} hourly rollups",
+                    offset, openCarts.size(), rollups.size());
+        } catch (IOException e) {
+            // The log is replayed from its oldest segment; rollups for already deleted segments are lost
+            log.warn("Could not read cart analytics snapshot {}: {}", snapshotPath, e.getMessage());
+            openCarts.clear();
+            rollups.clear();
+            offset = 0;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${cart.analytics.aggregate.interval-ms:60000}")
+    public synchronized void aggregate() {
+        if (!eventLog.isEnabled()) {
+            return;
+        }
+        try {
+            eventLog.flush();
+            long start = offset;
+            long next;
+            while ((next = eventLog.read(offset, batchSize, this::fold)) != offset) {
+                offset = next;
+            }
+            int agedOut = ageOut(System.currentTimeMillis());
+            if (offset == start && agedOut == 0) {
+                return;
+            }
+            
+            long cutoff = hourOf(System.currentTimeMillis()) - (long) retentionHours * HOUR_MS;
+            rollups.headMap(cutoff).clear();
+            
+            writeSnapshot();
+            eventLog.deleteBefore(offset);
+            log.debug("Folded cart events up to offset {} ({} open carts, {} aged out)", offset, openCarts.size(), agedOut);
+        } catch (IOException e) {
+            log.error("Cart analytics aggregation failed at offset {}: {}", offset, e.getMessage());
+        }
+    }
+    
+    public boolean isEnabled() {
+        return eventLog.isEnabled();
+    }
+    
+    public synchronized AbandonedCartReportDto report(int hours, int top) {
+        long to = hourOf(System.currentTimeMillis()) + HOUR_MS;
+        long from = to - (long) hours * HOUR_MS;
+        
+        long created = 0;
+        long abandoned = 0;
+        long completed = 0;
+        long valueAtRiskCents = 0;
+        long completedValueCents = 0;
+        Map<Long, long[]> products = new HashMap<>();
+        List<AbandonedCartReportDto.HourlyAbandonment> hourly = new ArrayList<>();
+        
+        for (Map.Entry<Long, HourlyRollup> entry : rollups.subMap(from, to).entrySet()) {
+            HourlyRollup rollup = entry.getValue();
+            created += rollup.created;
+            abandoned += rollup.abandoned;
+            completed += rollup.completed;
+            valueAtRiskCents += rollup.abandonedValueCents;
+            completedValueCents += rollup.completedValueCents;
+            rollup.products.forEach((productId, stats) -> {
+                long[] total = products.computeIfAbsent(productId, id -> new long[3]);
+                total[0] += stats[0];
+                total[1] += stats[1];
+                total[2] += stats[2];
+            });
+            hourly.add(AbandonedCartReportDto.HourlyAbandonment.builder()
+                    .hour(toDateTime(entry.getKey()))
+                    .createdCarts(rollup.created)
+                    .abandonedCarts(rollup.abandoned)
+                    .completedCarts(rollup.completed)
+                    .valueAtRisk(rollup.abandonedValueCents / 100.0)
+                    .build());
+        }
+        
+        List<AbandonedCartReportDto.AbandonedProduct> topProducts = products.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, long[]> e) -> e.getValue()[2]).reversed())
+                .limit(top)
+                .map(e -> AbandonedCartReportDto.AbandonedProduct.builder()
+                        .productId(e.getKey())
+                        .abandonedCarts(e.getValue()[0])
+                        .quantity(e.getValue()[1])
+                        .valueAtRisk(e.getValue()[2] / 100.0)
+                        .build())
+                .toList();
+        
+        long closed = abandoned + completed;
+        return AbandonedCartReportDto.builder()
+                .from(toDateTime(from))
+                .to(toDateTime(to))
+                .createdCarts(created)
+                .abandonedCarts(abandoned)
+                .completedCarts(completed)
+                .valueAtRisk(valueAtRiskCents / 100.0)
+                .completedValue(completedValueCents / 100.0)
+                .abandonmentRate(closed > 0 ? (double) abandoned / closed : 0.0)
+                .openCarts(openCarts.size())
+                .hourly(hourly)
+                .topProducts(topProducts)
+                .build();
+    }
+    
+    private void fold(CartEvent event) {
+        switch (event.type()) {
+            case CART_CREATED -> {
+                openCarts.putIfAbsent(event.cartId(), new OpenCart(event.at() + cartTtlMs));
+                rollupFor(event.at()).created++;
+            }
+            case ITEM_ADDED -> {
+                Line line = openCart(event).lines
+                        .computeIfAbsent(event.productId(), id -> new Line(0, event.priceCents()));
+                line.quantity += event.quantity();
+            }
+            case ITEM_REMOVED -> {
+                OpenCart cart = openCarts.get(event.cartId());
+                Line line = cart != null ? cart.lines.get(event.productId()) : null;
+                if (line != null && (line.quantity -= event.quantity()) <= 0) {
+                    cart.lines.remove(event.productId());
+                }
+            }
+            case ITEM_REPRICED -> {
+                OpenCart cart = openCarts.get(event.cartId());
+                Line line = cart != null ? cart.lines.get(event.productId()) : null;
+                if (line != null) {
+                    line.priceCents = event.priceCents();
+                }
+            }
+            case CART_CLEARED -> {
+                OpenCart cart = openCarts.get(event.cartId());
+                if (cart != null) {
+                    cart.lines.clear();
+                }
+            }
+            case CART_MERGED -> {
+                // Same rule as the SQL merge: quantities add up, the target keeps its frozen price and expiry
+                OpenCart source = openCarts.remove(event.cartId());
+                if (source != null) {
+                    OpenCart target = openCarts.computeIfAbsent(event.relatedCartId(), id -> new OpenCart(source.expiresAt));
+                    source.lines.forEach((productId, line) -> target.lines.merge(productId, line, (existing, added) -> {
+                        existing.quantity += added.quantity;
+                        return existing;
+                    }));
+                }
+            }
+            case CART_EXPIRED -> {
+                // Expiry batches may name carts that were converted meanwhile; only open carts count
+                OpenCart cart = openCarts.remove(event.cartId());
+                if (cart != null) {
+                    abandoned(cart, event.at());
+                }
+            }
+            case CART_COMPLETED -> {
+                OpenCart cart = openCarts.remove(event.cartId());
+                HourlyRollup rollup = rollupFor(event.at());
+                rollup.completed++;
+                if (cart != null) {
+                    cart.lines.values().forEach(line -> rollup.completedValueCents += (long) line.quantity * line.priceCents);
+                }
+            }
+        }
+    }
+    
+    // A cart first seen through a later event (its creation predates the log) gets a full TTL from then
+    private OpenCart openCart(CartEvent event) {
+        return openCarts.computeIfAbsent(event.cartId(), id -> new OpenCart(event.at() + cartTtlMs));
+    }
+    
+    private void abandoned(OpenCart cart, long at) {
+        if (cart.lines.isEmpty()) {
+            return;
+        }
+        HourlyRollup rollup = rollupFor(at);
+        rollup.abandoned++;
+        cart.lines.forEach((productId, line) -> {
+            long value = (long) line.quantity * line.priceCents;
+            rollup.abandonedValueCents += value;
+            long[] stats = rollup.products.computeIfAbsent(productId, id -> new long[3]);
+            stats[0]++;
+            stats[1] += line.quantity;
+            stats[2] += value;
+        });
+    }
+    
+    // Carts past their expiry by more than the grace period are counted as abandoned at their expiry time
+    private int ageOut(long now) {
+        int agedOut = 0;
+        Iterator<OpenCart> carts = openCarts.values().iterator();
+        while (carts.hasNext()) {
+            OpenCart cart = carts.next();
+            if (cart.expiresAt + openCartGraceMs < now) {
+                carts.remove();
+                abandoned(cart, cart.expiresAt);
+                agedOut++;
+            }
+        }
+        return agedOut;
+    }
+    
+    private void writeSnapshot() throws IOException {
+        if (snapshotPath.getParent() != null) {
+            Files.createDirectories(snapshotPath.getParent());
+        }
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(offset);
+            out.writeInt(openCarts.size());
+            for (Map.Entry<Long, OpenCart> cart : openCarts.entrySet()) {
+                out.writeLong(cart.getKey());
+                out.writeLong(cart.getValue().expiresAt);
+                out.writeInt(cart.getValue().lines.size());
+                for (Map.Entry<Long, Line> line : cart.getValue().lines.entrySet()) {
+                    out.writeLong(line.getKey());
+                    out.writeInt(line.getValue().quantity);
+                    out.writeInt(line.getValue().priceCents);
+                }
+            }
+            out.writeInt(rollups.size());
+            for (Map.Entry<Long, HourlyRollup> entry : rollups.entrySet()) {
+                HourlyRollup rollup = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeLong(rollup.created);
+                out.writeLong(rollup.abandoned);
+                out.writeLong(rollup.abandonedValueCents);
+                out.writeLong(rollup.completed);
+                out.writeLong(rollup.completedValueCents);
+                out.writeInt(rollup.products.size());
+                for (Map.Entry<Long, long[]> product : rollup.products.entrySet()) {
+                    out.writeLong(product.getKey());
+                    out.writeLong(product.getValue()[0]);
+                    out.writeLong(product.getValue()[1]);
+                    out.writeLong(product.getValue()[2]);
+                }
+            }
+        }
+        // Segments are only deleted after the snapshot that covers them is in place
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private HourlyRollup rollupFor(long at) {
+        return rollups.computeIfAbsent(hourOf(at), hour -> new HourlyRollup());
+    }
+    
+    private static long hourOf(long millis) {
+        return millis - Math.floorMod(millis, HOUR_MS);
+    }
+    
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+    
+    private static final class OpenCart {
+        private final long expiresAt;
+        private final Map<Long, Line> lines = new HashMap<>();
+        
+        private OpenCart(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    private static final class Line {
+        private int quantity;
+        private int priceCents;
+        
+        private Line(int quantity, int priceCents) {
+            this.quantity = quantity;
+            this.priceCents = priceCents;
+        }
+    }
+    
+    private static final class HourlyRollup {
+        private long created;
+        private long abandoned;
+        private long abandonedValueCents;
+        private long completed;
+        private long completedValueCents;
+        // productId -> {abandoned carts, quantity, value in cents}
+        private final Map<Long, long[]> products = new HashMap<>();
+    }
+}
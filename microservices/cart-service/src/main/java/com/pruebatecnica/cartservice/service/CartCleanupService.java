@@ -0,0 +1,199 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.entity.CartCleanupCheckpoint;
+import com.pruebatecnica.cartservice.repository.CartCleanupCheckpointRepository;
+import com.pruebatecnica.cartservice.repository.CartItemRepository;
+import com.pruebatecnica.cartservice.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Expires and purges carts in primary-key chunks, one short transaction per chunk, throttled to
+// cart.cleanup.rows-per-second so foreground cart traffic never waits behind a long bulk statement.
+// Items are deleted before their carts, and progress is checkpointed after every chunk so a run
+// interrupted by a restart resumes from the last processed id with the same reference time.
+// Carts expired here are reported to the event log like the ones the expiry wheel handles.
+@Component
+@Slf4j
+public class CartCleanupService {
+
+    private static final String JOB_NAME = "expired-carts";
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartCleanupCheckpointRepository checkpointRepository;
+    private final CartEventLog eventLog;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Counter expiredCounter;
+    private final Counter deletedCartsCounter;
+    private final Counter deletedItemsCounter;
+    private final Timer chunkTimer;
+    private final AtomicLong lastProcessedId = new AtomicLong();
+    private final AtomicLong maxId = new AtomicLong();
+
+    @Value("${cart.cleanup.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${cart.cleanup.rows-per-second:5000}")
+    private int rowsPerSecond;
+
+    @Value("${cart.cleanup.retention-days:7}")
+    private int retentionDays;
+
+    public CartCleanupService(CartRepository cartRepository,
+                              CartItemRepository cartItemRepository,
+                              CartCleanupCheckpointRepository checkpointRepository,
+                              CartEventLog eventLog,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.eventLog = eventLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.expiredCounter = Counter.builder("cart.cleanup.carts.expired").register(meterRegistry);
+        this.deletedCartsCounter = Counter.builder("cart.cleanup.carts.deleted").register(meterRegistry);
+        this.deletedItemsCounter = Counter.builder("cart.cleanup.items.deleted").register(meterRegistry);
+        this.chunkTimer = Timer.builder("cart.cleanup.chunk.duration").register(meterRegistry);
+        Gauge.builder("cart.cleanup.last.processed.id", lastProcessedId, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("cart.cleanup.max.id", maxId, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("cart.cleanup.running", running, r -> r.get() ? 1 : 0).register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${cart.cleanup.schedule:0 0 2 * * *}")
+    public void cleanupExpiredCarts() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Cart cleanup already running, skipping");
+            return;
+        }
+
+        try {
+            CartCleanupCheckpoint checkpoint = startOrResume();
+            if (checkpoint == null) {
+                return;
+            }
+            runChunks(checkpoint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Cart cleanup interrupted at cart ID {}, will resume on next run", lastProcessedId.get());
+        } catch (Exception e) {
+            // The checkpoint keeps the last committed chunk; the next run picks up from there
+            log.error("Cart cleanup stopped at cart ID {}: {}", lastProcessedId.get(), e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private CartCleanupCheckpoint startOrResume() {
+        CartCleanupCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME).orElse(null);
+        if (checkpoint != null && !checkpoint.isCompleted()) {
+            log.info("Resuming cart cleanup from cart ID {} (run started at {})",
+                    checkpoint.getLastProcessedId(), checkpoint.getRunStartedAt());
+            return checkpoint;
+        }
+
+        Long currentMaxId = cartRepository.findMaxId();
+        if (currentMaxId == null) {
+            return null;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        checkpoint = CartCleanupCheckpoint.builder()
+                .jobName(JOB_NAME)
+                .runStartedAt(now)
+                .lastProcessedId(0L)
+                .maxId(currentMaxId)
+                .completed(false)
+                .updatedAt(now)
+                .build();
+        log.info("Starting cart cleanup up to cart ID {}", currentMaxId);
+        return checkpointRepository.save(checkpoint);
+    }
+
+    private void runChunks(CartCleanupCheckpoint checkpoint) throws InterruptedException {
+        LocalDateTime now = checkpoint.getRunStartedAt();
+        LocalDateTime cutoffDate = now.minusDays(retentionDays);
+        maxId.set(checkpoint.getMaxId());
+        lastProcessedId.set(checkpoint.getLastProcessedId());
+
+        long totalExpired = 0;
+        long totalDeleted = 0;
+
+        for (long fromId = checkpoint.getLastProcessedId() + 1; fromId <= checkpoint.getMaxId(); fromId += chunkSize) {
+            long from = fromId;
+            long to = Math.min(fromId + chunkSize - 1, checkpoint.getMaxId());
+            long startedAt = System.nanoTime();
+
+            ChunkResult result = transactionTemplate.execute(status -> {
+                List<Long> expiredIds = cartRepository.lockExpirableIdsInRange(from, to, now);
+                if (!expiredIds.isEmpty()) {
+                    cartRepository.markExpiredByIds(expiredIds, now);
+                }
+
+                int deletedItems = 0;
+                int deletedCarts = 0;
+                List<Long> ids = cartRepository.findDeletableIdsInRange(from, to, cutoffDate);
+                if (!ids.isEmpty()) {
+                    deletedItems = cartItemRepository.deleteByCartIds(ids);
+                    deletedCarts = cartRepository.deleteByIds(ids);
+                }
+
+                checkpoint.setLastProcessedId(to);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+                return new ChunkResult(expiredIds, deletedCarts, deletedItems);
+            });
+            eventLog.cartsExpired(result.expiredIds());
+
+            long elapsedNanos = System.nanoTime() - startedAt;
+            chunkTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            expiredCounter.increment(result.expiredIds().size());
+            deletedCartsCounter.increment(result.deletedCarts());
+            deletedItemsCounter.increment(result.deletedItems());
+            lastProcessedId.set(to);
+            totalExpired += result.expiredIds().size();
+            totalDeleted += result.deletedCarts();
+
+            throttle(result.rows(), elapsedNanos);
+        }
+
+        checkpoint.setCompleted(true);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+        log.info("Cart cleanup finished: {} carts marked as expired, {} old carts deleted", totalExpired, totalDeleted);
+    }
+
+    // Sleeps long enough that the rows touched by the chunk stay within the configured rate
+    private void throttle(int rows, long elapsedNanos) throws InterruptedException {
+        if (rowsPerSecond <= 0 || rows == 0) {
+            return;
+        }
+        long budgetMillis = rows * 1000L / rowsPerSecond;
+        long sleepMillis = budgetMillis - elapsedNanos / 1_000_000;
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+    }
+
+    private record ChunkResult(List<Long> expiredIds, int deletedCarts, int deletedItems) {
+        int rows() {
+            return expiredIds.size() + deletedCarts + deletedItems;
+        }
+    }
+}
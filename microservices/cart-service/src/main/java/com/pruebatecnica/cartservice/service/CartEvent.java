@@ -0,0 +1,18 @@
+package com.pruebatecnica.cartservice.service;
+
+// One cart lifecycle fact as stored in the local event log. Unused fields are 0.
+public record CartEvent(Type type, long at, long cartId, long productId, int quantity, int priceCents, long relatedCartId) {
+    
+    public enum Type {
+        CART_CREATED,
+        ITEM_ADDED,
+        ITEM_REMOVED,
+        // priceCents is the new frozen line price after a revalidation
+        ITEM_REPRICED,
+        CART_CLEARED,
+        // cartId was folded into relatedCartId on login
+        CART_MERGED,
+        CART_EXPIRED,
+        CART_COMPLETED
+    }
+}
@@ -0,0 +1,330 @@
+package com.pruebatecnica.cartservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only local log of cart lifecycle events (cart.analytics.*), read by AbandonedCartAggregator so
+// reporting never scans carts/cart_items. Events are queued after the transaction commits and written by a
+// single background flush, so request threads never touch the disk; if the queue is full they are dropped
+// and counted. The log is a sequence of segment files named after the global offset of their first byte.
+//
+// Record layout (fixed size): type(byte) | at(long) | cartId(long) | productId(long) | quantity(int) |
+// priceCents(int) | relatedCartId(long) | crc32(int). A torn tail left by a crash is truncated on open.
+@Component
+@Slf4j
+public class CartEventLog {
+    
+    static final int RECORD_SIZE = 45;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+    private static final String SEGMENT_PREFIX = "cart-events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final CartEvent.Type[] TYPES = CartEvent.Type.values();
+    
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxRecordsPerFlush;
+    private final BlockingQueue<CartEvent> pending;
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    
+    private FileChannel current;
+    private long currentBase;
+    // Readers stop here: everything before it has been completely written
+    private volatile long endOffset;
+    
+    public CartEventLog(@Value("${cart.analytics.enabled:true}") boolean enabled,
+                        @Value("${cart.analytics.log.directory:./data/cart-events}") String directory,
+                        @Value("${cart.analytics.log.segment-bytes:67108864}") long segmentBytes,
+                        @Value("${cart.analytics.log.queue-capacity:65536}") int queueCapacity,
+                        @Value("${cart.analytics.log.max-records-per-flush:8192}") int maxRecordsPerFlush,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = Math.max(RECORD_SIZE, segmentBytes - segmentBytes % RECORD_SIZE);
+        this.maxRecordsPerFlush = maxRecordsPerFlush;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        
+        this.writtenCounter = Counter.builder("cart.events.written").register(meterRegistry);
+        this.droppedCounter = Counter.builder("cart.events.dropped").register(meterRegistry);
+        Gauge.builder("cart.events.pending", pending, BlockingQueue::size).register(meterRegistry);
+    }
+    
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> segments.put(baseOf(file), file));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, segmentPath(0L));
+        }
+        
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        currentBase = last.getKey();
+        current = FileChannel.open(last.getValue(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long size = current.size();
+        if (size % RECORD_SIZE != 0) {
+            log.warn("Truncating torn record at the end of {}", last.getValue());
+            size -= size % RECORD_SIZE;
+            current.truncate(size);
+        }
+        current.position(size);
+        endOffset = currentBase + size;
+        log.info("Cart event log opened at {} ({} segments, end offset {})", directory, segments.size(), endOffset);
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled || current == null) {
+            return;
+        }
+        flush();
+        synchronized (this) {
+            current.force(false);
+            current.close();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void cartCreated(Long cartId) {
+        emit(CartEvent.Type.CART_CREATED, cartId, 0, 0, 0, 0);
+    }
+    
+    public void itemAdded(Long cartId, Long productId, int quantity, int priceCents) {
+        emit(CartEvent.Type.ITEM_ADDED, cartId, productId, quantity, priceCents, 0);
+    }
+    
+    public void itemRemoved(Long cartId, Long productId, int quantity) {
+        emit(CartEvent.Type.ITEM_REMOVED, cartId, productId, quantity, 0, 0);
+    }
+    
+    public void itemRepriced(Long cartId, Long productId, int priceCents) {
+        emit(CartEvent.Type.ITEM_REPRICED, cartId, productId, 0, priceCents, 0);
+    }
+    
+    public void cartCleared(Long cartId) {
+        emit(CartEvent.Type.CART_CLEARED, cartId, 0, 0, 0, 0);
+    }
+    
+    public void cartMerged(Long sourceCartId, Long targetCartId) {
+        emit(CartEvent.Type.CART_MERGED, sourceCartId, 0, 0, 0, targetCartId);
+    }
+    
+    public void cartsExpired(List<Long> cartIds) {
+        cartIds.forEach(cartId -> emit(CartEvent.Type.CART_EXPIRED, cartId, 0, 0, 0, 0));
+    }
+    
+    public void cartCompleted(Long cartId) {
+        emit(CartEvent.Type.CART_COMPLETED, cartId, 0, 0, 0, 0);
+    }
+    
+    @Scheduled(fixedDelayString = "${cart.analytics.log.flush-interval-ms:1000}")
+    public synchronized void flush() throws IOException {
+        if (!enabled || current == null) {
+            return;
+        }
+        
+        List<CartEvent> batch = new ArrayList<>();
+        while (pending.drainTo(batch, maxRecordsPerFlush) > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate(batch.size() * RECORD_SIZE);
+            CRC32 crc = new CRC32();
+            for (CartEvent event : batch) {
+                int start = buffer.position();
+                buffer.put((byte) event.type().ordinal())
+                        .putLong(event.at())
+                        .putLong(event.cartId())
+                        .putLong(event.productId())
+                        .putInt(event.quantity())
+                        .putInt(event.priceCents())
+                        .putLong(event.relatedCartId());
+                crc.reset();
+                crc.update(buffer.array(), start, PAYLOAD_SIZE);
+                buffer.putInt((int) crc.getValue());
+            }
+            buffer.flip();
+            
+            // Records never straddle segments: the batch is written in slices that fit the current one
+            while (buffer.hasRemaining()) {
+                if (current.position() >= segmentBytes) {
+                    rotate();
+                }
+                int writable = (int) Math.min(buffer.remaining(), segmentBytes - current.position());
+                ByteBuffer slice = buffer.slice(buffer.position(), writable);
+                while (slice.hasRemaining()) {
+                    current.write(slice);
+                }
+                buffer.position(buffer.position() + writable);
+                endOffset = currentBase + current.position();
+            }
+            
+            writtenCounter.increment(batch.size());
+            batch.clear();
+        }
+    }
+    
+    // Reads up to maxRecords complete events starting at fromOffset; returns the offset to continue from
+    public long read(long fromOffset, int maxRecords, Consumer<CartEvent> consumer) throws IOException {
+        long end = endOffset;
+        Map.Entry<Long, Path> first = segments.firstEntry();
+        if (first != null && fromOffset < first.getKey()) {
+            log.warn("Cart events before offset {} were already deleted, continuing from there", first.getKey());
+            fromOffset = first.getKey();
+        }
+        
+        long offset = fromOffset;
+        int read = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        CRC32 crc = new CRC32();
+        
+        while (offset < end && read < maxRecords) {
+            Map.Entry<Long, Path> segment = segments.floorEntry(offset);
+            if (segment == null) {
+                break;
+            }
+            Long nextBase = segments.higherKey(segment.getKey());
+            long segmentEnd = nextBase != null ? Math.min(nextBase, end) : end;
+            if (offset >= segmentEnd) {
+                // Rotated segment fully consumed (or cut short by a crash): move on to the next one
+                if (nextBase == null) {
+                    break;
+                }
+                offset = nextBase;
+                continue;
+            }
+            
+            try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                long position = offset - segment.getKey();
+                long limit = Math.min(segmentEnd - segment.getKey(), channel.size());
+                while (position + RECORD_SIZE <= limit && read < maxRecords) {
+                    buffer.clear();
+                    int records = (int) Math.min(Math.min(buffer.capacity(), limit - position) / RECORD_SIZE, maxRecords - read);
+                    buffer.limit(records * RECORD_SIZE);
+                    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                        // keep reading until the slice is full
+                    }
+                    buffer.flip();
+                    
+                    for (int i = 0; i < records; i++) {
+                        int start = i * RECORD_SIZE;
+                        crc.reset();
+                        crc.update(buffer.array(), start, PAYLOAD_SIZE);
+                        if ((int) crc.getValue() != buffer.getInt(start + PAYLOAD_SIZE)) {
+                            log.warn("Skipping corrupt cart event at offset {}", segment.getKey() + position + start);
+                            continue;
+                        }
+                        consumer.accept(new CartEvent(TYPES[buffer.get(start)], buffer.getLong(start + 1),
+                                buffer.getLong(start + 9), buffer.getLong(start + 17), buffer.getInt(start + 25),
+                                buffer.getInt(start + 29), buffer.getLong(start + 33)));
+                    }
+                    position += (long) records * RECORD_SIZE;
+                    read += records;
+                }
+                offset = segment.getKey() + position;
+                if (position >= limit && nextBase != null) {
+                    offset = nextBase;
+                }
+            }
+        }
+        return offset;
+    }
+    
+    // Drops segments whose records all precede offset (already folded by the aggregator)
+    public void deleteBefore(long offset) {
+        Map.Entry<Long, Path> segment = segments.firstEntry();
+        while (segment != null) {
+            Long nextBase = segments.higherKey(segment.getKey());
+            if (nextBase == null || nextBase > offset) {
+                return;
+            }
+            try {
+                segments.remove(segment.getKey());
+                Files.deleteIfExists(segment.getValue());
+                log.debug("Deleted cart event segment {}", segment.getValue());
+            } catch (IOException e) {
+                log.warn("Could not delete cart event segment {}: {}", segment.getValue(), e.getMessage());
+            }
+            segment = segments.firstEntry();
+        }
+    }
+    
+    private void emit(CartEvent.Type type, long cartId, long productId, int quantity, int priceCents, long relatedCartId) {
+        if (!enabled) {
+            return;
+        }
+        CartEvent event = new CartEvent(type, System.currentTimeMillis(), cartId, productId, quantity, priceCents, relatedCartId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Rolled back mutations must not show up in the reports
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+    }
+    
+    private void enqueue(CartEvent event) {
+        if (!pending.offer(event)) {
+            droppedCounter.increment();
+        }
+    }
+    
+    private void rotate() throws IOException {
+        long base = currentBase + current.position();
+        current.force(false);
+        current.close();
+        
+        Path path = segmentPath(base);
+        current = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        currentBase = base;
+        segments.put(base, path);
+        log.debug("Rotated cart event log to {}", path);
+    }
+    
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+    }
+    
+    private static long baseOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,139 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.repository.CartRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Tracks expiresAt of active carts in a hierarchical timing wheel and expires them continuously in
+// small batches, instead of leaving it to lazy checks on read and the nightly cleanup (which remains
+// as a backstop). Entries are loaded from MySQL at startup and added when carts are created.
+// The expiry UPDATE re-checks status and expiresAt, so duplicate or stale entries are harmless.
+@Component
+@Slf4j
+public class CartExpiryScheduler {
+
+    private final CartRepository cartRepository;
+    private final CartEventLog eventLog;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final HierarchicalTimingWheel wheel;
+    private final Deque<Long> dueIds = new ArrayDeque<>();
+
+    @Value("${cart.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cart.expiry.max-per-tick:5000}")
+    private int maxPerTick;
+
+    @Value("${cart.expiry.load-chunk-size:10000}")
+    private int loadChunkSize;
+
+    public CartExpiryScheduler(CartRepository cartRepository,
+                               CartEventLog eventLog,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${cart.expiry.wheel.enabled:true}") boolean enabled,
+                               @Value("${cart.expiry.wheel.tick-ms:1000}") long tickMs,
+                               @Value("${cart.expiry.wheel.size:512}") int wheelSize) {
+        this.cartRepository = cartRepository;
+        this.eventLog = eventLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.wheel = new HierarchicalTimingWheel(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveCarts() {
+        if (!enabled) {
+            return;
+        }
+        Long maxId = cartRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+
+        for (long fromId = 1; fromId <= maxId; fromId += loadChunkSize) {
+            List<Object[]> rows = cartRepository.findActiveExpiriesInRange(fromId, fromId + loadChunkSize - 1);
+            for (Object[] row : rows) {
+                schedule((Long) row[0], (LocalDateTime) row[1]);
+            }
+        }
+        log.info("Cart expiry wheel loaded with {} active carts", size());
+    }
+
+    public void schedule(Long cartId, LocalDateTime expiresAt) {
+        if (!enabled || cartId == null || expiresAt == null) {
+            return;
+        }
+        long deadline = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (wheel) {
+            if (!wheel.add(cartId, deadline)) {
+                dueIds.add(cartId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.expiry.wheel.tick-ms:1000}")
+    public void expireDueCarts() {
+        if (!enabled) {
+            return;
+        }
+
+        // Collect at most max-per-tick ids; the rest stay queued so a burst is spread over several ticks
+        List<Long> batch = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advanceTo(System.currentTimeMillis(), dueIds::add);
+            while (!dueIds.isEmpty() && batch.size() < maxPerTick) {
+                batch.add(dueIds.poll());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        for (int i = 0; i < batch.size(); i += batchSize) {
+            List<Long> ids = batch.subList(i, Math.min(i + batchSize, batch.size()));
+            try {
+                // Only the carts that really expired are reported; converted or extended ones are skipped
+                List<Long> expiredIds = transactionTemplate.execute(status -> {
+                    List<Long> due = cartRepository.lockExpirableByIds(ids, now);
+                    if (!due.isEmpty()) {
+                        cartRepository.markExpiredByIds(due, now);
+                    }
+                    return due;
+                });
+                expired += expiredIds.size();
+                eventLog.cartsExpired(expiredIds);
+            } catch (Exception e) {
+                log.error("Error expiring {} carts, requeueing: {}", ids.size(), e.getMessage());
+                synchronized (wheel) {
+                    dueIds.addAll(ids);
+                }
+            }
+        }
+
+        if (expired > 0) {
+            log.debug("Expired {} carts ({} due)", expired, batch.size());
+        }
+    }
+
+    public long size() {
+        synchronized (wheel) {
+            return wheel.size() + dueIds.size();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pruebatecnica.cartservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// In-process striped lock for cart mutations, keyed by user id (authenticated carts) or session id.
+// A fixed, power-of-two array of locks is allocated once; keys are hashed straight onto a stripe,
+// so acquiring a lock allocates nothing. Serializing same-cart requests here means the optimistic
+// version checks in the database only have to settle races between service instances.
+@Component
+public class CartLockManager {
+
+    private final boolean enabled;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final Counter contendedCounter;
+    private final Timer waitTimer;
+
+    public CartLockManager(@Value("${cart.lock.enabled:true}") boolean enabled,
+                           @Value("${cart.lock.stripes:1024}") int stripeCount,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+
+        FunctionCounter.builder("cart.lock.acquisitions", acquisitions, LongAdder::sum).register(meterRegistry);
+        this.contendedCounter = Counter.builder("cart.lock.contended").register(meterRegistry);
+        this.waitTimer = Timer.builder("cart.lock.wait").register(meterRegistry);
+    }
+
+    public ReentrantLock lock(String sessionId, Long userId) {
+        if (!enabled || (sessionId == null && userId == null)) {
+            return null;
+        }
+        ReentrantLock lock = stripes[stripeFor(sessionId, userId)];
+        acquisitions.increment();
+
+        // Fast path: no waiting, no timing
+        if (lock.tryLock()) {
+            return lock;
+        }
+
+        contended.increment();
+        contendedCounter.increment();
+        long start = System.nanoTime();
+        lock.lock();
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return lock;
+    }
+
+    public void unlock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getContended() {
+        return contended.sum();
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private int stripeFor(String sessionId, Long userId) {
+        // Same precedence as cart lookup: the user id identifies the cart when present
+        int h = userId != null ? Long.hashCode(userId) * 0x9E3779B9 : sessionId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,80 @@
+package com.pruebatecnica.cartservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Runs a cart mutation under the cart's striped lock and retries it when it loses a race: an optimistic
+// lock conflict on the versioned Cart/CartItem rows, or a deadlock/lock timeout between concurrent upserts.
+// Every attempt must start its own transaction (and commit before the lock is released), so this is
+// called from outside the @Transactional CartService.
+@Component
+@Slf4j
+public class CartMutationExecutor {
+
+    private final MeterRegistry meterRegistry;
+    private final CartLockManager lockManager;
+
+    @Value("${cart.mutation.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${cart.mutation.initial-backoff-ms:10}")
+    private long initialBackoffMs;
+
+    @Value("${cart.mutation.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    public CartMutationExecutor(MeterRegistry meterRegistry, CartLockManager lockManager) {
+        this.meterRegistry = meterRegistry;
+        this.lockManager = lockManager;
+    }
+
+    public <T> T execute(String operation, String sessionId, Long userId, Supplier<T> mutation) {
+        long backoffMs = initialBackoffMs;
+
+        for (int attempt = 1; ; attempt++) {
+            ReentrantLock lock = lockManager.lock(sessionId, userId);
+            try {
+                return mutation.get();
+            } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+                meterRegistry.counter("cart.mutation.conflicts", "operation", operation).increment();
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("cart.mutation.retries.exhausted", "operation", operation).increment();
+                    log.warn("Cart {} still conflicting after {} attempts", operation, attempt);
+                    throw e;
+                }
+            } finally {
+                lockManager.unlock(lock);
+            }
+
+            // Back off without holding the stripe; full jitter keeps concurrent retries from colliding again
+            long sleepMs = ThreadLocalRandom.current().nextLong(backoffMs + 1);
+            log.debug("Cart {} conflict on attempt {}, retrying in {} ms", operation, attempt, sleepMs);
+            sleep(sleepMs);
+            backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        }
+    }
+
+    public void run(String operation, String sessionId, Long userId, Runnable mutation) {
+        execute(operation, sessionId, userId, () -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying cart mutation", e);
+        }
+    }
+}
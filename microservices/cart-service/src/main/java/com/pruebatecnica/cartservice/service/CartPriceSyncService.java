@@ -0,0 +1,127 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.repository.CartItemRepository;
+import com.pruebatecnica.cartservice.repository.CartItemRepositoryCustom.RepriceCandidate;
+import com.pruebatecnica.cartservice.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Applies catalog price changes pushed by product-service to the lines of open (ACTIVE) carts.
+// Work is set-based and paged: one indexed SELECT finds a page of stale lines across every changed product,
+// then one UPDATE reprices them and one UPDATE recomputes the totals of just the carts they belong to,
+// all in a short transaction per page. Carts in CHECKOUT are left alone; checkout revalidates them anyway.
+@Component
+@Slf4j
+public class CartPriceSyncService {
+    
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final MappedCartCache cartCache;
+    private final WriteBehindCartStore cartStore;
+    private final CartEventLog eventLog;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter repricedCounter;
+    
+    @Value("${cart.price-sync.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${cart.price-sync.batch-size:1000}")
+    private int batchSize;
+    
+    @Value("${cart.price-sync.products-per-batch:500}")
+    private int productsPerBatch;
+    
+    public CartPriceSyncService(CartItemRepository cartItemRepository,
+                                CartRepository cartRepository,
+                                MappedCartCache cartCache,
+                                WriteBehindCartStore cartStore,
+                                CartEventLog eventLog,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.cartCache = cartCache;
+        this.cartStore = cartStore;
+        this.eventLog = eventLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.repricedCounter = Counter.builder("cart.price-sync.lines.repriced").register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Returns the number of cart lines repriced
+    public int applyPriceChanges(Map<Long, Integer> priceCentsByProductId) {
+        if (!enabled || priceCentsByProductId.isEmpty()) {
+            return 0;
+        }
+        
+        List<Long> productIds = new ArrayList<>(priceCentsByProductId.keySet());
+        int repriced = 0;
+        int carts = 0;
+        
+        for (int i = 0; i < productIds.size(); i += productsPerBatch) {
+            Map<Long, Integer> prices = new HashMap<>();
+            productIds.subList(i, Math.min(i + productsPerBatch, productIds.size()))
+                    .forEach(productId -> prices.put(productId, priceCentsByProductId.get(productId)));
+            
+            long afterItemId = 0;
+            while (true) {
+                List<RepriceCandidate> page = cartItemRepository.findRepriceCandidates(prices, afterItemId, batchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                carts += repricePage(page);
+                repriced += page.size();
+                afterItemId = page.get(page.size() - 1).itemId();
+                if (page.size() < batchSize) {
+                    break;
+                }
+            }
+        }
+        
+        repricedCounter.increment(repriced);
+        log.info("Applied {} product price changes: {} cart lines repriced across {} carts",
+                priceCentsByProductId.size(), repriced, carts);
+        return repriced;
+    }
+    
+    private int repricePage(List<RepriceCandidate> page) {
+        Map<Long, Integer> priceByItemId = new HashMap<>();
+        Map<Long, RepriceCandidate> cartsById = new LinkedHashMap<>();
+        for (RepriceCandidate line : page) {
+            priceByItemId.put(line.itemId(), line.newPriceCents());
+            cartsById.putIfAbsent(line.cartId(), line);
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            cartItemRepository.updatePrices(priceByItemId);
+            cartRepository.recomputeTotals(cartsById.keySet());
+            for (RepriceCandidate line : page) {
+                eventLog.itemRepriced(line.cartId(), line.productId(), line.newPriceCents());
+            }
+            cartsById.values().forEach(cart -> cartCache.invalidate(cart.sessionId(), cart.userId()));
+        });
+        
+        // Write-behind views still show the old prices: persist their pending operations and drop them
+        if (cartStore.isEnabled()) {
+            cartsById.values().forEach(cart -> {
+                cartStore.flushCart(cart.sessionId(), cart.userId());
+                cartStore.evict(cart.sessionId(), cart.userId());
+            });
+        }
+        return cartsById.size();
+    }
+}
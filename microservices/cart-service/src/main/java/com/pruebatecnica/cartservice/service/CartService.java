@@ -1,23 +1,31 @@
 package com.pruebatecnica.cartservice.service;
 
 import com.pruebatecnica.cartservice.dto.AddToCartRequest;
+import com.pruebatecnica.cartservice.dto.CartDeltaDto;
 import com.pruebatecnica.cartservice.dto.CartDto;
 import com.pruebatecnica.cartservice.dto.CartItemDto;
+import com.pruebatecnica.cartservice.dto.CartOperationRequest;
+import com.pruebatecnica.cartservice.dto.CartRevalidationDto;
+import com.pruebatecnica.cartservice.dto.PriceChangeDto;
 import com.pruebatecnica.cartservice.entity.Cart;
 import com.pruebatecnica.cartservice.entity.CartItem;
 import com.pruebatecnica.cartservice.repository.CartRepository;
 import com.pruebatecnica.cartservice.repository.CartItemRepository;
+import com.pruebatecnica.serviceclient.ProductInfo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +37,10 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductService productService;
+    private final MappedCartCache cartCache;
+    private final CartExpiryScheduler expiryScheduler;
+    private final SessionIdGenerator sessionIdGenerator;
+    private final CartEventLog eventLog;
     
     @Value("${cart.session.expiration:2592000000}") // 30 days default
     private long sessionExpirationMs;
@@ -37,6 +49,12 @@ public class CartService {
     public CartDto getCart(String sessionId, Long userId) {
         log.info("Getting cart for sessionId: {}, userId: {}", sessionId, userId);
         
+        CartDto cached = cartCache.get(sessionId, userId);
+        if (cached != null && isCurrent(cached, sessionId, userId)) {
+            return cached;
+        }
+        long loadedAt = System.currentTimeMillis();
+        
         Optional<Cart> cartOpt;
         
         if (userId != null) {
@@ -53,19 +71,55 @@ public class CartService {
         
         Cart cart = cartOpt.get();
         
+        // Read-only path: the expiry scheduler (or the next write) marks the row and emits the event
         if (cart.isExpired()) {
-            log.info("Cart {} is expired, marking as expired", cart.getId());
-            cart.setStatus(Cart.CartStatus.EXPIRED);
-            cartRepository.save(cart);
+            log.info("Cart {} is expired, returning an empty cart", cart.getId());
             return createEmptyCartDto(sessionId, userId);
         }
         
-        return convertToDto(cart);
+        CartDto cartDto = convertToDto(cart);
+        cartCache.put(sessionId, userId, cartDto, loadedAt);
+        return cartDto;
+    }
+    
+    // Cheap conditional-GET check: the ETag is derived from the cart row alone, without loading its items
+    @Transactional(readOnly = true)
+    public String getCartETag(String sessionId, Long userId) {
+        Optional<CartRepository.CartTotals> totals;
+        if (userId != null) {
+            totals = cartRepository.findTotalsByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE);
+        } else if (sessionId != null) {
+            totals = cartRepository.findTotalsBySessionIdAndStatus(sessionId, Cart.CartStatus.ACTIVE);
+        } else {
+            return null;
+        }
+        
+        // Expired carts go through getCart so they get marked as such
+        return totals
+                .filter(cart -> cart.getExpiresAt() == null || cart.getExpiresAt().isAfter(LocalDateTime.now()))
+                .map(cart -> eTagOf(cart.getId(), cart.getVersion()))
+                .orElse(null);
+    }
+    
+    // A cached cart may predate changes made on another instance (or while this one was down); the header
+    // row is read through its index without loading any items, so the hit stays much cheaper than a reload
+    private boolean isCurrent(CartDto cached, String sessionId, Long userId) {
+        Optional<CartRepository.CartTotals> totals = userId != null
+                ? cartRepository.findTotalsByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE)
+                : cartRepository.findTotalsBySessionIdAndStatus(sessionId, Cart.CartStatus.ACTIVE);
+        return totals
+                .filter(cart -> cart.getId().equals(cached.getId()) && cart.getVersion().equals(cached.getVersion()))
+                .isPresent();
+    }
+    
+    public String eTagOf(Long cartId, Long version) {
+        return cartId != null && version != null ? "W/\"" + cartId + "-" + version + "\"" : null;
     }
     
     public CartDto addToCart(AddToCartRequest request, Long userId) {
         log.info("Adding product {} to cart. SessionId: {}, UserId: {}, Quantity: {}", 
                 request.getProductId(), request.getSessionId(), userId, request.getQuantity());
+        cartCache.invalidate(request.getSessionId(), userId);
         
         // Get product details from product service
         var productInfo = productService.getProductInfo(request.getProductId());
@@ -73,43 +127,193 @@ public class CartService {
             throw new IllegalArgumentException("Producto no encontrado con ID: " + request.getProductId());
         }
         
-        // Get or create cart
-        Cart cart = getOrCreateCart(request.getSessionId(), userId);
+        // One SELECT loads the cart with its lines; the response lines are derived in memory from it
+        Cart cart = getOrCreateCart(request.getSessionId(), userId, true);
         
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), request.getProductId());
+        Optional<CartItem> existingItem = cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(request.getProductId()))
+                .findFirst();
         
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
-            log.info("Updated quantity for product {} in cart {}", request.getProductId(), cart.getId());
-        } else {
-            // Create new cart item
-            CartItem newItem = CartItem.builder()
-                    .cart(cart)
+        // Existing lines keep the price frozen when they were first added
+        int linePriceCents = existingItem.map(CartItem::getPriceCents).orElse(productInfo.getPriceCents());
+        
+        Long itemId = cartItemRepository.upsertItem(cart.getId(), request.getProductId(),
+                productInfo.getName(), productInfo.getImageUrl(), request.getQuantity(),
+                linePriceCents, productInfo.getCurrency());
+        log.info("Upserted product {} into cart {} (item {})", request.getProductId(), cart.getId(), itemId);
+        
+        long priceDeltaCents = (long) request.getQuantity() * linePriceCents;
+        eventLog.itemAdded(cart.getId(), request.getProductId(), request.getQuantity(), linePriceCents);
+        
+        // The upsert adds to whatever quantity is in the row. If the cart version still matches what was read,
+        // no other writer touched it in between, so the lines and totals read above plus this delta are exact
+        if (cartRepository.applyTotalsDeltaIfVersion(cart.getId(), request.getQuantity(), priceDeltaCents, cart.getVersion()) == 0) {
+            log.info("Cart {} changed concurrently, reloading it for the response", cart.getId());
+            cartRepository.applyTotalsDelta(cart.getId(), request.getQuantity(), priceDeltaCents);
+            return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<CartItemDto> itemDtos = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            CartItemDto itemDto = convertToDto(item);
+            if (item.getProductId().equals(request.getProductId())) {
+                int quantity = item.getQuantity() + request.getQuantity();
+                itemDto.setQuantity(quantity);
+                itemDto.setTotalPrice((long) quantity * linePriceCents / 100.0);
+                itemDto.setUpdatedAt(now);
+            }
+            itemDtos.add(itemDto);
+        }
+        
+        if (existingItem.isEmpty()) {
+            itemDtos.add(CartItemDto.builder()
+                    .id(itemId)
                     .productId(request.getProductId())
                     .productName(productInfo.getName())
                     .productImageUrl(productInfo.getImageUrl())
                     .quantity(request.getQuantity())
-                    .priceCents(productInfo.getPriceCents())
+                    .price(linePriceCents / 100.0)
+                    .totalPrice((long) request.getQuantity() * linePriceCents / 100.0)
                     .currency(productInfo.getCurrency())
-                    .build();
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+        
+        CartDto cartDto = convertToDto(cart, itemDtos);
+        cartDto.setTotalItems(cart.getTotalItems() + request.getQuantity());
+        cartDto.setTotalPrice((cart.getTotalPriceCents() + priceDeltaCents) / 100.0);
+        cartDto.setVersion(cart.getVersion() + 1);
+        cartDto.setUpdatedAt(now);
+        return cartDto;
+    }
+    
+    // Delta variant: reads the cart header and the affected line only, so the cost does not grow with the cart
+    public CartDeltaDto addToCartDelta(AddToCartRequest request, Long userId) {
+        log.info("Adding product {} to cart (delta). SessionId: {}, UserId: {}, Quantity: {}", 
+                request.getProductId(), request.getSessionId(), userId, request.getQuantity());
+        cartCache.invalidate(request.getSessionId(), userId);
+        
+        var productInfo = productService.getProductInfo(request.getProductId());
+        if (productInfo == null) {
+            throw new IllegalArgumentException("Producto no encontrado con ID: " + request.getProductId());
+        }
+        
+        Cart cart = getOrCreateCart(request.getSessionId(), userId, false);
+        Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), request.getProductId());
+        int linePriceCents = existingItem.map(CartItem::getPriceCents).orElse(productInfo.getPriceCents());
+        
+        Long itemId = cartItemRepository.upsertItem(cart.getId(), request.getProductId(),
+                productInfo.getName(), productInfo.getImageUrl(), request.getQuantity(),
+                linePriceCents, productInfo.getCurrency());
+        cartRepository.applyTotalsDelta(cart.getId(), request.getQuantity(), (long) request.getQuantity() * linePriceCents);
+        eventLog.itemAdded(cart.getId(), request.getProductId(), request.getQuantity(), linePriceCents);
+        log.info("Upserted product {} into cart {} (item {})", request.getProductId(), cart.getId(), itemId);
+        
+        LocalDateTime now = LocalDateTime.now();
+        int quantity = existingItem.map(CartItem::getQuantity).orElse(0) + request.getQuantity();
+        CartItemDto itemDto = existingItem.map(this::convertToDto).orElseGet(() -> CartItemDto.builder()
+                .productId(request.getProductId())
+                .productName(productInfo.getName())
+                .productImageUrl(productInfo.getImageUrl())
+                .price(linePriceCents / 100.0)
+                .currency(productInfo.getCurrency())
+                .createdAt(now)
+                .build());
+        itemDto.setId(itemId);
+        itemDto.setQuantity(quantity);
+        itemDto.setTotalPrice((long) quantity * linePriceCents / 100.0);
+        itemDto.setUpdatedAt(now);
+        
+        return toDelta(cart.getId(), request.getProductId(), itemDto);
+    }
+    
+    public CartDto applyOperations(String sessionId, Long userId, List<CartOperationRequest> operations) {
+        log.info("Applying {} cart operations. SessionId: {}, UserId: {}", operations.size(), sessionId, userId);
+        cartCache.invalidate(sessionId, userId);
+        
+        Cart cart = getOrCreateCart(sessionId, userId, true);
+        Map<Long, CartItem> lines = new HashMap<>();
+        Map<Long, Integer> quantitiesBefore = new HashMap<>();
+        cart.getItems().forEach(item -> {
+            lines.put(item.getProductId(), item);
+            quantitiesBefore.put(item.getProductId(), item.getQuantity());
+        });
+        
+        // One product-service call for every product that may need a new line
+        Set<Long> lookupIds = operations.stream()
+                .filter(op -> op.getType() == CartOperationRequest.OperationType.ADD
+                        || (op.getType() == CartOperationRequest.OperationType.SET && !lines.containsKey(op.getProductId())))
+                .map(CartOperationRequest::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, ProductInfo> products = productService.getProductsInfo(lookupIds);
+        
+        for (CartOperationRequest operation : operations) {
+            Long productId = operation.getProductId();
+            CartItem line = lines.get(productId);
             
-            cartItemRepository.save(newItem);
-            log.info("Added new product {} to cart {}", request.getProductId(), cart.getId());
+            switch (operation.getType()) {
+                case ADD -> {
+                    int quantity = requireQuantity(operation, 1);
+                    if (!products.containsKey(productId)) {
+                        throw new IllegalArgumentException("Producto no encontrado con ID: " + productId);
+                    }
+                    if (line != null) {
+                        line.setQuantity(line.getQuantity() + quantity);
+                    } else {
+                        lines.put(productId, addLine(cart, products.get(productId), quantity));
+                    }
+                }
+                case SET -> {
+                    int quantity = requireQuantity(operation, 0);
+                    if (quantity == 0) {
+                        removeLine(cart, lines, productId);
+                    } else if (line != null) {
+                        line.setQuantity(quantity);
+                    } else if (products.containsKey(productId)) {
+                        lines.put(productId, addLine(cart, products.get(productId), quantity));
+                    } else {
+                        throw new IllegalArgumentException("Producto no encontrado con ID: " + productId);
+                    }
+                }
+                case REMOVE -> removeLine(cart, lines, productId);
+            }
         }
         
-        // Update cart totals
-        updateCartTotals(cart);
+        // Totals are computed once over the final set of lines; inserts, updates and deletes go out in one flush
+        cart.updateTotals();
+        cart = cartRepository.saveAndFlush(cart);
+        log.info("Applied {} operations to cart {}", operations.size(), cart.getId());
+        emitLineChanges(cart, quantitiesBefore);
         
-        return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+        return convertToDto(cart);
     }
     
     public CartDto updateCartItem(String sessionId, Long userId, Long productId, Integer quantity) {
+        Cart cart = changeItemQuantity(sessionId, userId, productId, quantity).cart();
+        return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+    }
+    
+    public CartDeltaDto updateCartItemDelta(String sessionId, Long userId, Long productId, Integer quantity) {
+        LineChange change = changeItemQuantity(sessionId, userId, productId, quantity);
+        return toDelta(change.cart().getId(), productId, change.item());
+    }
+    
+    public CartDto removeFromCart(String sessionId, Long userId, Long productId) {
+        Cart cart = removeItem(sessionId, userId, productId);
+        return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+    }
+    
+    public CartDeltaDto removeFromCartDelta(String sessionId, Long userId, Long productId) {
+        Cart cart = removeItem(sessionId, userId, productId);
+        return toDelta(cart.getId(), productId, null);
+    }
+    
+    private LineChange changeItemQuantity(String sessionId, Long userId, Long productId, Integer quantity) {
         log.info("Updating cart item. SessionId: {}, UserId: {}, ProductId: {}, Quantity: {}", 
                 sessionId, userId, productId, quantity);
+        cartCache.invalidate(sessionId, userId);
         
         Cart cart = findActiveCart(sessionId, userId);
         if (cart == null) {
@@ -122,6 +326,7 @@ public class CartService {
         }
         
         CartItem item = itemOpt.get();
+        int quantityDelta = Math.max(quantity, 0) - item.getQuantity();
         
         if (quantity <= 0) {
             // Remove item
@@ -134,68 +339,206 @@ public class CartService {
             log.info("Updated quantity for product {} in cart {}", productId, cart.getId());
         }
         
-        // Update cart totals
-        updateCartTotals(cart);
+        cartRepository.applyTotalsDelta(cart.getId(), quantityDelta, (long) quantityDelta * item.getPriceCents());
+        if (quantityDelta > 0) {
+            eventLog.itemAdded(cart.getId(), productId, quantityDelta, item.getPriceCents());
+        } else if (quantityDelta < 0) {
+            eventLog.itemRemoved(cart.getId(), productId, -quantityDelta);
+        }
         
-        return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+        return new LineChange(cart, quantity > 0 ? convertToDto(item) : null);
     }
     
-    public CartDto removeFromCart(String sessionId, Long userId, Long productId) {
+    private Cart removeItem(String sessionId, Long userId, Long productId) {
         log.info("Removing product {} from cart. SessionId: {}, UserId: {}", productId, sessionId, userId);
+        cartCache.invalidate(sessionId, userId);
         
         Cart cart = findActiveCart(sessionId, userId);
         if (cart == null) {
             throw new IllegalArgumentException("Carrito no encontrado");
         }
         
-        cartItemRepository.deleteByCartIdAndProductId(cart.getId(), productId);
-        log.info("Removed product {} from cart {}", productId, cart.getId());
-        
-        // Update cart totals
-        updateCartTotals(cart);
+        Optional<CartItem> itemOpt = cartItemRepository.findByCartIdAndProductId(cart.getId(), productId);
+        if (itemOpt.isPresent()) {
+            CartItem item = itemOpt.get();
+            cartItemRepository.delete(item);
+            cartRepository.applyTotalsDelta(cart.getId(), -item.getQuantity(), -item.getTotalPriceCents());
+            eventLog.itemRemoved(cart.getId(), productId, item.getQuantity());
+            log.info("Removed product {} from cart {}", productId, cart.getId());
+        }
         
-        return convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart));
+        return cart;
     }
     
     public void clearCart(String sessionId, Long userId) {
         log.info("Clearing cart. SessionId: {}, UserId: {}", sessionId, userId);
+        cartCache.invalidate(sessionId, userId);
         
         Cart cart = findActiveCart(sessionId, userId);
         if (cart != null) {
             cartItemRepository.deleteByCartId(cart.getId());
-            updateCartTotals(cart);
+            cartRepository.resetTotals(cart.getId());
+            eventLog.cartCleared(cart.getId());
             log.info("Cleared cart {}", cart.getId());
         }
     }
     
-    public String generateSessionId() {
-        return UUID.randomUUID().toString();
+    // Called once after login: the anonymous session cart is folded into the user's active cart with set-based
+    // statements (one INSERT ... SELECT for the lines, one totals recompute), independent of the cart size
+    public CartDto mergeSessionCart(String sessionId, Long userId) {
+        log.info("Merging session cart {} into cart of user {}", sessionId, userId);
+        cartCache.invalidate(sessionId, null);
+        cartCache.invalidate(sessionId, userId);
+        
+        Optional<Cart> sessionCartOpt = cartRepository.findBySessionIdAndStatus(sessionId, Cart.CartStatus.ACTIVE)
+                .filter(cart -> cart.getUserId() == null);
+        if (sessionCartOpt.isEmpty()) {
+            return getCart(sessionId, userId);
+        }
+        Cart sessionCart = sessionCartOpt.get();
+        
+        Optional<Cart> userCartOpt = cartRepository.findByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE);
+        if (userCartOpt.isEmpty()) {
+            // No cart yet for the user: adopting the session cart is a single UPDATE
+            cartRepository.assignUser(sessionCart.getId(), userId);
+            log.info("Assigned session cart {} to user {}", sessionCart.getId(), userId);
+        } else {
+            Long userCartId = userCartOpt.get().getId();
+            int merged = cartItemRepository.mergeItems(sessionCart.getId(), userCartId);
+            cartItemRepository.deleteByCartIds(List.of(sessionCart.getId()));
+            cartRepository.deleteByIds(List.of(sessionCart.getId()));
+            cartRepository.reconcileTotals(userCartId, userCartId);
+            eventLog.cartMerged(sessionCart.getId(), userCartId);
+            log.info("Merged session cart {} into cart {} ({} rows affected)", sessionCart.getId(), userCartId, merged);
+        }
+        
+        return getCart(sessionId, userId);
     }
     
-    @Scheduled(cron = "${cart.cleanup.schedule:0 0 2 * * *}")
-    @Transactional
-    public void cleanupExpiredCarts() {
-        log.info("Starting cleanup of expired carts");
+    // Refreshes the frozen line prices against the catalog: one batch product lookup, one UPDATE for every changed line
+    public CartRevalidationDto revalidatePrices(String sessionId, Long userId) {
+        log.info("Revalidating cart prices. SessionId: {}, UserId: {}", sessionId, userId);
+        cartCache.invalidate(sessionId, userId);
+        
+        Cart cart = findCartWithItems(sessionId, userId, Cart.CartStatus.ACTIVE)
+                .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado"));
+        
+        Set<Long> productIds = cart.getItems().stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toSet());
+        // An outage throws ProductServiceUnavailableException; a product absent from the map is inactive or gone
+        Map<Long, ProductInfo> products = productService.getProductsInfo(productIds);
+        
+        Map<Long, Integer> newPrices = new HashMap<>();
+        List<PriceChangeDto> priceChanges = new ArrayList<>();
+        List<Long> unavailableProductIds = new ArrayList<>();
+        long priceDeltaCents = 0;
+        
+        for (CartItem item : cart.getItems()) {
+            ProductInfo productInfo = products.get(item.getProductId());
+            if (productInfo == null) {
+                unavailableProductIds.add(item.getProductId());
+            } else if (productInfo.getPriceCents() != null && !productInfo.getPriceCents().equals(item.getPriceCents())) {
+                newPrices.put(item.getId(), productInfo.getPriceCents());
+                priceDeltaCents += (long) item.getQuantity() * (productInfo.getPriceCents() - item.getPriceCents());
+                priceChanges.add(PriceChangeDto.builder()
+                        .productId(item.getProductId())
+                        .productName(item.getProductName())
+                        .quantity(item.getQuantity())
+                        .oldPrice(item.getPriceInCurrency())
+                        .newPrice(productInfo.getPriceCents() / 100.0)
+                        .currency(item.getCurrency())
+                        .build());
+            }
+        }
         
-        LocalDateTime now = LocalDateTime.now();
+        if (newPrices.isEmpty()) {
+            return CartRevalidationDto.builder()
+                    .cart(convertToDto(cart))
+                    .priceChanges(priceChanges)
+                    .unavailableProductIds(unavailableProductIds)
+                    .build();
+        }
+        
+        cartItemRepository.updatePrices(newPrices);
+        cartRepository.applyTotalsDelta(cart.getId(), 0, priceDeltaCents);
+        for (CartItem item : cart.getItems()) {
+            Integer newPrice = newPrices.get(item.getId());
+            if (newPrice != null) {
+                eventLog.itemRepriced(cart.getId(), item.getProductId(), newPrice);
+            }
+        }
+        log.info("Updated {} line prices in cart {}", newPrices.size(), cart.getId());
+        
+        return CartRevalidationDto.builder()
+                .cart(convertToDto(cartRepository.findByIdWithItems(cart.getId()).orElse(cart)))
+                .priceChanges(priceChanges)
+                .unavailableProductIds(unavailableProductIds)
+                .build();
+    }
+    
+    @Transactional(readOnly = true)
+    public boolean isCheckoutPending(String sessionId, Long userId) {
+        if (userId != null) {
+            return cartRepository.findByUserIdAndStatus(userId, Cart.CartStatus.CHECKOUT).isPresent();
+        }
+        return sessionId != null && cartRepository.findBySessionIdAndStatus(sessionId, Cart.CartStatus.CHECKOUT).isPresent();
+    }
+    
+    // Carts left in CHECKOUT by an attempt that got no answer from order-service, oldest first
+    @Transactional(readOnly = true)
+    public List<Cart> findStaleCheckouts(LocalDateTime before, int limit) {
+        return cartRepository.findByStatusAndUpdatedAtBeforeOrderByUpdatedAt(Cart.CartStatus.CHECKOUT, before,
+                PageRequest.of(0, limit));
+    }
+    
+    // Locks the cart for checkout; a cart left in CHECKOUT by an interrupted attempt is resumed as is
+    public Cart beginCheckout(String sessionId, Long userId) {
+        log.info("Beginning checkout. SessionId: {}, UserId: {}", sessionId, userId);
+        cartCache.invalidate(sessionId, userId);
         
-        // Mark expired carts
-        int expiredCount = cartRepository.markExpiredCarts(now);
-        log.info("Marked {} carts as expired", expiredCount);
+        Cart cart = findCartWithItems(sessionId, userId, Cart.CartStatus.ACTIVE)
+                .or(() -> findCartWithItems(sessionId, userId, Cart.CartStatus.CHECKOUT))
+                .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado"));
+        
+        if (cart.getItems().isEmpty()) {
+            throw new IllegalArgumentException("El carrito está vacío");
+        }
         
-        // Delete old expired/abandoned carts (older than 7 days)
-        LocalDateTime cutoffDate = now.minusDays(7);
-        int deletedCount = cartRepository.deleteOldCarts(cutoffDate);
-        log.info("Deleted {} old carts", deletedCount);
+        if (cart.getStatus() == Cart.CartStatus.ACTIVE) {
+            cart.setStatus(Cart.CartStatus.CHECKOUT);
+            cart = cartRepository.saveAndFlush(cart);
+        }
+        return cart;
     }
     
-    private Cart getOrCreateCart(String sessionId, Long userId) {
+    public void completeCheckout(Long cartId, String sessionId, Long userId) {
+        cartCache.invalidate(sessionId, userId);
+        if (cartRepository.transitionStatus(cartId, Cart.CartStatus.CHECKOUT, Cart.CartStatus.COMPLETED) > 0) {
+            eventLog.cartCompleted(cartId);
+        }
+    }
+    
+    public void abortCheckout(Long cartId, String sessionId, Long userId) {
+        cartCache.invalidate(sessionId, userId);
+        cartRepository.transitionStatus(cartId, Cart.CartStatus.CHECKOUT, Cart.CartStatus.ACTIVE);
+    }
+    
+    public String generateSessionId() {
+        return sessionIdGenerator.generate();
+    }
+    
+    private Cart getOrCreateCart(String sessionId, Long userId, boolean withItems) {
         Optional<Cart> cartOpt;
         
         if (userId != null) {
-            cartOpt = cartRepository.findByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE);
+            cartOpt = withItems
+                    ? cartRepository.findByUserIdAndStatusWithItems(userId, Cart.CartStatus.ACTIVE)
+                    : cartRepository.findByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE);
         } else if (sessionId != null) {
-            cartOpt = cartRepository.findBySessionIdAndStatus(sessionId, Cart.CartStatus.ACTIVE);
+            cartOpt = withItems
+                    ? cartRepository.findBySessionIdAndStatusWithItems(sessionId, Cart.CartStatus.ACTIVE)
+                    : cartRepository.findBySessionIdAndStatus(sessionId, Cart.CartStatus.ACTIVE);
         } else {
             sessionId = generateSessionId();
             cartOpt = Optional.empty();
@@ -204,8 +547,10 @@ public class CartService {
         if (cartOpt.isPresent()) {
             Cart cart = cartOpt.get();
             if (cart.isExpired()) {
-                cart.setStatus(Cart.CartStatus.EXPIRED);
-                cartRepository.save(cart);
+                // Conditional UPDATE: when the scheduler got there first nothing changes and nothing is emitted
+                if (cartRepository.markExpiredByIds(List.of(cart.getId()), LocalDateTime.now()) > 0) {
+                    eventLog.cartsExpired(List.of(cart.getId()));
+                }
                 return createNewCart(sessionId, userId);
             }
             return cart;
@@ -229,10 +574,65 @@ public class CartService {
         
         cart = cartRepository.save(cart);
         log.info("Created new cart with ID: {} for sessionId: {}, userId: {}", cart.getId(), sessionId, userId);
+        expiryScheduler.schedule(cart.getId(), expiresAt);
+        eventLog.cartCreated(cart.getId());
         
         return cart;
     }
     
+    private CartItem addLine(Cart cart, ProductInfo productInfo, int quantity) {
+        CartItem item = CartItem.builder()
+                .cart(cart)
+                .productId(productInfo.getId())
+                .productName(productInfo.getName())
+                .productImageUrl(productInfo.getImageUrl())
+                .quantity(quantity)
+                .priceCents(productInfo.getPriceCents())
+                .currency(productInfo.getCurrency())
+                .build();
+        cart.getItems().add(item);
+        return item;
+    }
+    
+    private void removeLine(Cart cart, Map<Long, CartItem> lines, Long productId) {
+        CartItem line = lines.remove(productId);
+        if (line != null) {
+            // orphanRemoval deletes the row on flush
+            cart.getItems().remove(line);
+        }
+    }
+    
+    // Analytics events for the net effect of a batch, diffed against the quantities it started from
+    private void emitLineChanges(Cart cart, Map<Long, Integer> quantitiesBefore) {
+        Map<Long, Integer> removed = new HashMap<>(quantitiesBefore);
+        for (CartItem item : cart.getItems()) {
+            int delta = item.getQuantity() - removed.getOrDefault(item.getProductId(), 0);
+            removed.remove(item.getProductId());
+            if (delta > 0) {
+                eventLog.itemAdded(cart.getId(), item.getProductId(), delta, item.getPriceCents());
+            } else if (delta < 0) {
+                eventLog.itemRemoved(cart.getId(), item.getProductId(), -delta);
+            }
+        }
+        removed.forEach((productId, quantity) -> eventLog.itemRemoved(cart.getId(), productId, quantity));
+    }
+    
+    private int requireQuantity(CartOperationRequest operation, int minimum) {
+        if (operation.getQuantity() == null || operation.getQuantity() < minimum) {
+            throw new IllegalArgumentException("Cantidad inválida para el producto " + operation.getProductId());
+        }
+        return operation.getQuantity();
+    }
+    
+    private Optional<Cart> findCartWithItems(String sessionId, Long userId, Cart.CartStatus status) {
+        if (userId != null) {
+            return cartRepository.findByUserIdAndStatusWithItems(userId, status);
+        } else if (sessionId != null) {
+            return cartRepository.findBySessionIdAndStatusWithItems(sessionId, status);
+        }
+        return Optional.empty();
+    }
+    
     private Cart findActiveCart(String sessionId, Long userId) {
         if (userId != null) {
             return cartRepository.findByUserIdAndStatus(userId, Cart.CartStatus.ACTIVE).orElse(null);
@@ -242,14 +642,24 @@ public class CartService {
         return null;
     }
     
-    private void updateCartTotals(Cart cart) {
-        Integer totalItems = cartItemRepository.getTotalItemsByCartId(cart.getId());
-        Long totalPriceCents = cartItemRepository.getTotalPriceCentsByCartId(cart.getId());
-        
-        cart.setTotalItems(totalItems != null ? totalItems : 0);
-        cart.setTotalPriceCents(totalPriceCents != null ? totalPriceCents : 0L);
-        
-        cartRepository.save(cart);
+    private CartRepository.CartTotals requireTotals(Long cartId) {
+        return cartRepository.findTotalsById(cartId)
+                .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado"));
+    }
+    
+    private CartDeltaDto toDelta(Long cartId, Long productId, CartItemDto item) {
+        CartRepository.CartTotals totals = requireTotals(cartId);
+        return CartDeltaDto.builder()
+                .cartId(totals.getId())
+                .sessionId(totals.getSessionId())
+                .version(totals.getVersion())
+                .totalItems(totals.getTotalItems())
+                .totalPrice(totals.getTotalPriceCents() / 100.0)
+                .currency(totals.getCurrency())
+                .item(item)
+                .removedProductId(item == null ? productId : null)
+                .updatedAt(totals.getUpdatedAt())
+                .build();
     }
     
     private CartDto createEmptyCartDto(String sessionId, Long userId) {
@@ -272,6 +682,10 @@ public class CartService {
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         
+        return convertToDto(cart, itemDtos);
+    }
+    
+    private CartDto convertToDto(Cart cart, List<CartItemDto> itemDtos) {
         return CartDto.builder()
                 .id(cart.getId())
                 .sessionId(cart.getSessionId())
@@ -281,6 +695,7 @@ public class CartService {
                 .totalPrice(cart.getTotalPriceInCurrency())
                 .currency(cart.getCurrency())
                 .isAnonymous(cart.isAnonymous())
+                .version(cart.getVersion())
                 .expiresAt(cart.getExpiresAt())
                 .createdAt(cart.getCreatedAt())
                 .updatedAt(cart.getUpdatedAt())
@@ -302,4 +717,7 @@ public class CartService {
                 .updatedAt(item.getUpdatedAt())
                 .build();
     }
+    
+    private record LineChange(Cart cart, CartItemDto item) {
+    }
 }
\ No newline at end of file
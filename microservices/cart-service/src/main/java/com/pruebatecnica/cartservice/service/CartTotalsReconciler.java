@@ -0,0 +1,50 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.repository.CartRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Safety net for the incremental cart totals: periodically recomputes them from cart_items
+// in id-range chunks and fixes any cart whose stored totals drifted.
+@Component
+@Slf4j
+public class CartTotalsReconciler {
+    
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${cart.totals.reconcile.chunk-size:1000}")
+    private int chunkSize;
+    
+    public CartTotalsReconciler(CartRepository cartRepository, PlatformTransactionManager transactionManager) {
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(cron = "${cart.totals.reconcile.schedule:0 15 * * * *}")
+    public void reconcileCartTotals() {
+        Long maxId = cartRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        
+        log.info("Starting cart totals reconciliation up to cart ID {}", maxId);
+        
+        int repaired = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += chunkSize) {
+            long from = fromId;
+            long to = fromId + chunkSize - 1;
+            Integer updated = transactionTemplate.execute(status -> cartRepository.reconcileTotals(from, to));
+            if (updated != null && updated > 0) {
+                log.warn("Repaired totals drift on {} carts in ID range {} - {}", updated, from, to);
+                repaired += updated;
+            }
+        }
+        
+        log.info("Cart totals reconciliation finished, {} carts repaired", repaired);
+    }
+}
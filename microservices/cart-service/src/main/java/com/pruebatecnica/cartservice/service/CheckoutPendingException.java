@@ -0,0 +1,11 @@
+package com.pruebatecnica.cartservice.service;
+
+// order-service gave no answer (unreachable, 5xx, timeout): the order may or may not exist. The cart stays
+// in CHECKOUT; retrying the checkout resumes it with the same idempotency key, and if nobody does,
+// CheckoutService settles it once checkout recovery kicks in
+public class CheckoutPendingException extends IllegalStateException {
+
+    public CheckoutPendingException(Throwable cause) {
+        super("No fue posible confirmar la orden. Intente el checkout de nuevo para completarla", cause);
+    }
+}
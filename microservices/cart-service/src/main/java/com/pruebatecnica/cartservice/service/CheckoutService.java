@@ -0,0 +1,141 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.dto.CartRevalidationDto;
+import com.pruebatecnica.cartservice.dto.CheckoutRequest;
+import com.pruebatecnica.cartservice.dto.CheckoutResultDto;
+import com.pruebatecnica.cartservice.entity.Cart;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+
+// Cart-to-order conversion in one server-side call. Not transactional as a whole: the cart is moved to
+// CHECKOUT in its own transaction, the order is created remotely, then the cart is completed.
+// The idempotency key (cart id + version at checkout) makes a retried checkout return the same order.
+// A cart whose order call got no answer and that nobody retries is settled by recoverStaleCheckouts.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutService {
+    
+    private final CartService cartService;
+    private final OrderClient orderClient;
+    private final CartMutationExecutor mutationExecutor;
+    
+    @Value("${cart.checkout.recovery.enabled:true}")
+    private boolean recoveryEnabled;
+    
+    @Value("${cart.checkout.recovery.after-ms:300000}")
+    private long recoveryAfterMs;
+    
+    @Value("${cart.checkout.recovery.batch-size:100}")
+    private int recoveryBatchSize;
+    
+    public CheckoutResultDto checkout(String sessionId, Long userId, String userEmail, CheckoutRequest request) {
+        // Frozen prices are checked first; if anything changed the client confirms the new totals and retries.
+        // A resumed checkout skips this: its order may already exist with the prices it was sent with.
+        if (!cartService.isCheckoutPending(sessionId, userId)) {
+            CartRevalidationDto revalidation = cartService.revalidatePrices(sessionId, userId);
+            if (revalidation.hasChanges()) {
+                return CheckoutResultDto.builder()
+                        .cartId(revalidation.getCart().getId())
+                        .priceChanges(revalidation.getPriceChanges())
+                        .unavailableProductIds(revalidation.getUnavailableProductIds())
+                        .build();
+            }
+        }
+        
+        Cart cart = cartService.beginCheckout(sessionId, userId);
+        String idempotencyKey = idempotencyKey(cart);
+        
+        OrderClient.OrderInfo order;
+        try {
+            order = orderClient.createOrder(buildOrderRequest(cart, request), idempotencyKey, userId, userEmail);
+        } catch (IllegalArgumentException e) {
+            // Definitive rejection (e.g. product no longer available): give the cart back to the user
+            cartService.abortCheckout(cart.getId(), sessionId, userId);
+            throw e;
+        } catch (IllegalStateException e) {
+            // No answer: the cart stays in CHECKOUT and the client is told to retry, which resumes it with the same key
+            throw new CheckoutPendingException(e);
+        }
+        
+        cartService.completeCheckout(cart.getId(), sessionId, userId);
+        log.info("Cart {} converted into order {}", cart.getId(), order.getOrderNumber());
+        
+        return CheckoutResultDto.builder()
+                .cartId(cart.getId())
+                .orderId(order.getId())
+                .orderNumber(order.getOrderNumber())
+                .orderStatus(order.getStatus())
+                .totalItems(order.getTotalItems())
+                .total(order.getTotal())
+                .currency(order.getCurrency())
+                .build();
+    }
+    
+    // Settles checkouts left pending for longer than after-ms, well past order-service's read timeout: if the
+    // order exists under the cart's key the cart is completed, otherwise it goes back to ACTIVE
+    @Scheduled(fixedDelayString = "${cart.checkout.recovery.interval-ms:60000}")
+    public void recoverStaleCheckouts() {
+        if (!recoveryEnabled) {
+            return;
+        }
+        
+        LocalDateTime before = LocalDateTime.now().minusNanos(recoveryAfterMs * 1_000_000);
+        for (Cart cart : cartService.findStaleCheckouts(before, recoveryBatchSize)) {
+            try {
+                mutationExecutor.execute("checkout-recovery", cart.getSessionId(), cart.getUserId(), () -> {
+                    recover(cart);
+                    return null;
+                });
+            } catch (Exception e) {
+                // order-service still unreachable: try again on the next run
+                log.warn("Could not settle pending checkout of cart {}: {}", cart.getId(), e.getMessage());
+            }
+        }
+    }
+    
+    private void recover(Cart cart) {
+        OrderClient.OrderInfo order = cart.getUserId() != null
+                ? orderClient.findCheckoutOrder(idempotencyKey(cart), cart.getUserId())
+                : null;
+        if (order != null) {
+            cartService.completeCheckout(cart.getId(), cart.getSessionId(), cart.getUserId());
+            log.info("Pending checkout of cart {} completed with order {}", cart.getId(), order.getOrderNumber());
+        } else {
+            cartService.abortCheckout(cart.getId(), cart.getSessionId(), cart.getUserId());
+            log.info("Pending checkout of cart {} had no order; cart reactivated", cart.getId());
+        }
+    }
+    
+    private static String idempotencyKey(Cart cart) {
+        return "cart-" + cart.getId() + "-v" + cart.getVersion();
+    }
+    
+    private OrderClient.CreateOrderRequest buildOrderRequest(Cart cart, CheckoutRequest request) {
+        CheckoutRequest details = request != null ? request : new CheckoutRequest();
+        
+        return OrderClient.CreateOrderRequest.builder()
+                .items(cart.getItems().stream()
+                        .map(item -> OrderClient.OrderItemRequest.builder()
+                                .productId(item.getProductId())
+                                .quantity(item.getQuantity())
+                                .productName(item.getProductName())
+                                .productImageUrl(item.getProductImageUrl())
+                                .price(item.getPriceInCurrency())
+                                .currency(item.getCurrency())
+                                .build())
+                        .collect(Collectors.toList()))
+                .notes(details.getNotes())
+                .shippingAddress(details.getShippingAddress())
+                .billingAddress(details.getBillingAddress())
+                .paymentMethod(details.getPaymentMethod())
+                .paymentReference(details.getPaymentReference())
+                .build();
+    }
+}
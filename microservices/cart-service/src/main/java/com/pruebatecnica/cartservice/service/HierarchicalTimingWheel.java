@@ -0,0 +1,108 @@
+package com.pruebatecnica.cartservice.service;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Hierarchical timing wheel for long ids with millisecond deadlines. Level 0 has wheelSize buckets of
+// tickMs each; every further level covers wheelSize times the span of the one below and is created on
+// demand. When time advances past a bucket its entries are re-inserted from the root, which either
+// places them on a finer level or reports them as due. Adding and expiring are O(1) per entry.
+// Not thread-safe: callers synchronize around add/advanceTo.
+class HierarchicalTimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final Bucket[] buckets;
+    private final HierarchicalTimingWheel root;
+    private HierarchicalTimingWheel overflow;
+    private long currentTime;
+    private long size;
+
+    HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        this(tickMs, wheelSize, startMs, null);
+    }
+
+    private HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs, HierarchicalTimingWheel root) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.root = root != null ? root : this;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    // Returns false when the deadline already falls within the current tick, i.e. the id is due now
+    boolean add(long id, long deadlineMs) {
+        if (deadlineMs < currentTime + tickMs) {
+            return false;
+        }
+        if (deadlineMs < currentTime + interval) {
+            buckets[(int) ((deadlineMs / tickMs) % wheelSize)].add(id, deadlineMs);
+        } else {
+            if (overflow == null) {
+                overflow = new HierarchicalTimingWheel(interval, wheelSize, currentTime, root);
+            }
+            overflow.add(id, deadlineMs);
+        }
+        if (this == root) {
+            size++;
+        }
+        return true;
+    }
+
+    void advanceTo(long timeMs, LongConsumer due) {
+        while (currentTime + tickMs <= timeMs) {
+            currentTime += tickMs;
+            if (overflow != null) {
+                overflow.advanceTo(currentTime, due);
+            }
+            Bucket bucket = buckets[(int) ((currentTime / tickMs) % wheelSize)];
+            if (bucket.count > 0) {
+                long[] ids = bucket.ids;
+                long[] deadlines = bucket.deadlines;
+                int count = bucket.count;
+                bucket.reset();
+                for (int i = 0; i < count; i++) {
+                    root.size--;
+                    if (!root.add(ids[i], deadlines[i])) {
+                        due.accept(ids[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    private static final class Bucket {
+        private static final long[] EMPTY = new long[0];
+
+        private long[] ids = EMPTY;
+        private long[] deadlines = EMPTY;
+        private int count;
+
+        void add(long id, long deadlineMs) {
+            if (count == ids.length) {
+                int capacity = Math.max(8, count * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                deadlines = Arrays.copyOf(deadlines, capacity);
+            }
+            ids[count] = id;
+            deadlines[count] = deadlineMs;
+            count++;
+        }
+
+        // Hands the arrays to the caller; the bucket starts over with fresh storage
+        void reset() {
+            ids = EMPTY;
+            deadlines = EMPTY;
+            count = 0;
+        }
+    }
+}
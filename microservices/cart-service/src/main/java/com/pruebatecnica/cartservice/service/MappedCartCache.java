@@ -0,0 +1,419 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.dto.CartDto;
+import com.pruebatecnica.cartservice.dto.CartItemDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Off-heap cart cache backed by a memory-mapped file (cart.cache.mapped.enabled).
+// The file is a header page followed by fixed-size, direct-mapped slots; each slot holds one cart
+// and its lines in a compact binary encoding, so millions of anonymous carts stay outside the GC heap
+// and the cache survives restarts. Reads decode straight from the mapping into the DTO.
+//
+// Slot layout: state(int) | payloadLength(int) | stamp(long) | crc32(long) | payload.
+// A torn write (crash mid-update) fails the CRC check and is treated as a miss. Invalidations leave a
+// tombstone stamped with the commit time; a load that started before the slot's stamp is not cached, which
+// keeps a slow reader from re-inserting a cart that was modified while it was reading. Invalidation is
+// local to this instance, so callers check a hit's version against the database before serving it.
+@Component
+@Slf4j
+public class MappedCartCache {
+
+    private static final int MAGIC = 0x43415254; // "CART"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4096;
+
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_LIVE = 1;
+    private static final int STATE_TOMBSTONE = 2;
+
+    private static final int OFFSET_STATE = 0;
+    private static final int OFFSET_LENGTH = 4;
+    private static final int OFFSET_STAMP = 8;
+    private static final int OFFSET_CRC = 16;
+    private static final int OFFSET_PAYLOAD = 24;
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final Path path;
+    private final int slotCount;
+    private final int slotSize;
+    private final ReentrantReadWriteLock[] locks;
+    private final ThreadLocal<ByteBuffer> encodeBuffer;
+    private final ThreadLocal<byte[]> stringScratch;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] segments;
+    private int slotsPerSegment;
+
+    public MappedCartCache(@Value("${cart.cache.mapped.enabled:false}") boolean enabled,
+                           @Value("${cart.cache.mapped.path:./data/cart-cache.bin}") String path,
+                           @Value("${cart.cache.mapped.slots:1048576}") int slotCount,
+                           @Value("${cart.cache.mapped.slot-size:4096}") int slotSize,
+                           @Value("${cart.cache.mapped.lock-stripes:256}") int lockStripes) {
+        this.enabled = enabled;
+        this.path = Path.of(path);
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+
+        int stripes = Integer.highestOneBit(Math.max(1, lockStripes - 1) << 1);
+        this.locks = new ReentrantReadWriteLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        this.encodeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(slotSize - OFFSET_PAYLOAD));
+        this.stringScratch = ThreadLocal.withInitial(() -> new byte[slotSize]);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        boolean compatible = header.getInt(0) == MAGIC
+                && header.getInt(4) == FORMAT_VERSION
+                && header.getInt(8) == slotSize
+                && header.getInt(12) == slotCount;
+        if (!compatible) {
+            // New file or different geometry: start from an empty (sparse) file
+            log.info("Initializing mapped cart cache at {} ({} slots x {} bytes)", path, slotCount, slotSize);
+            channel.truncate(0);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(8, slotSize);
+            header.putInt(12, slotCount);
+            header.force();
+        } else {
+            log.info("Reusing mapped cart cache at {}", path);
+        }
+
+        // A single mapping is limited to 2 GB, so slots are spread over as many segments as needed
+        slotsPerSegment = Integer.MAX_VALUE / slotSize;
+        int segmentCount = (slotCount + slotsPerSegment - 1) / slotsPerSegment;
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int slotsInSegment = Math.min(slotsPerSegment, slotCount - i * slotsPerSegment);
+            long position = HEADER_SIZE + (long) i * slotsPerSegment * slotSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) slotsInSegment * slotSize);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled || channel == null) {
+            return;
+        }
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CartDto get(String sessionId, Long userId) {
+        if (!enabled) {
+            return null;
+        }
+        String key = keyOf(sessionId, userId);
+        int slot = slotFor(key);
+        ByteBuffer segment = segments[slot / slotsPerSegment];
+        int base = (slot % slotsPerSegment) * slotSize;
+
+        ReentrantReadWriteLock lock = lockFor(slot);
+        lock.readLock().lock();
+        try {
+            if (segment.getInt(base + OFFSET_STATE) != STATE_LIVE) {
+                return null;
+            }
+            int length = segment.getInt(base + OFFSET_LENGTH);
+            if (length <= 0 || length > slotSize - OFFSET_PAYLOAD
+                    || crc(segment, base + OFFSET_PAYLOAD, length) != segment.getLong(base + OFFSET_CRC)) {
+                return null;
+            }
+
+            int[] pos = {base + OFFSET_PAYLOAD};
+            if (!keyMatches(segment, pos, key)) {
+                return null;
+            }
+            CartDto cart = decode(segment, pos);
+
+            // Expired carts fall through to the database, which marks them EXPIRED
+            if (cart.getExpiresAt() != null && LocalDateTime.now().isAfter(cart.getExpiresAt())) {
+                return null;
+            }
+            return cart;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // loadedAtMillis: when the database read that produced this cart started
+    public void put(String sessionId, Long userId, CartDto cart, long loadedAtMillis) {
+        if (!enabled || cart.getId() == null) {
+            return;
+        }
+        String key = keyOf(sessionId, userId);
+
+        ByteBuffer payload = encodeBuffer.get();
+        payload.clear();
+        try {
+            putString(payload, key);
+            encode(payload, cart);
+        } catch (BufferOverflowException e) {
+            // Cart too large for a slot: it is simply served from the database
+            invalidateNow(key);
+            return;
+        }
+        int length = payload.position();
+
+        int slot = slotFor(key);
+        ByteBuffer segment = segments[slot / slotsPerSegment];
+        int base = (slot % slotsPerSegment) * slotSize;
+
+        ReentrantReadWriteLock lock = lockFor(slot);
+        lock.writeLock().lock();
+        try {
+            // Whatever the slot holds (tombstone or a copy from a later load) is at least as recent
+            if (segment.getLong(base + OFFSET_STAMP) >= loadedAtMillis) {
+                return;
+            }
+            segment.putInt(base + OFFSET_STATE, STATE_EMPTY);
+            segment.put(base + OFFSET_PAYLOAD, payload.array(), 0, length);
+            segment.putInt(base + OFFSET_LENGTH, length);
+            segment.putLong(base + OFFSET_STAMP, loadedAtMillis);
+            segment.putLong(base + OFFSET_CRC, crc(payload.array(), length));
+            segment.putInt(base + OFFSET_STATE, STATE_LIVE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops the cached cart once the surrounding transaction commits (immediately if there is none)
+    public void invalidate(String sessionId, Long userId) {
+        if (!enabled || (sessionId == null && userId == null)) {
+            return;
+        }
+        String key = keyOf(sessionId, userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(key);
+                }
+            });
+        } else {
+            invalidateNow(key);
+        }
+    }
+
+    private void invalidateNow(String key) {
+        int slot = slotFor(key);
+        ByteBuffer segment = segments[slot / slotsPerSegment];
+        int base = (slot % slotsPerSegment) * slotSize;
+
+        // Direct-mapped slots: a tombstone may also drop a colliding cart, which only costs a reload
+        ReentrantReadWriteLock lock = lockFor(slot);
+        lock.writeLock().lock();
+        try {
+            segment.putInt(base + OFFSET_STATE, STATE_TOMBSTONE);
+            segment.putLong(base + OFFSET_STAMP, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void encode(ByteBuffer out, CartDto cart) {
+        out.putLong(cart.getId());
+        out.putLong(cart.getUserId() != null ? cart.getUserId() : NULL_LONG);
+        out.putLong(cart.getVersion() != null ? cart.getVersion() : NULL_LONG);
+        putString(out, cart.getSessionId());
+        putString(out, cart.getStatus());
+        out.putInt(cart.getTotalItems() != null ? cart.getTotalItems() : 0);
+        out.putLong(toCents(cart.getTotalPrice()));
+        putString(out, cart.getCurrency());
+        out.put((byte) (cart.isAnonymous() ? 1 : 0));
+        putTime(out, cart.getExpiresAt());
+        putTime(out, cart.getCreatedAt());
+        putTime(out, cart.getUpdatedAt());
+
+        List<CartItemDto> items = cart.getItems() != null ? cart.getItems() : List.of();
+        out.putInt(items.size());
+        for (CartItemDto item : items) {
+            out.putLong(item.getId() != null ? item.getId() : NULL_LONG);
+            out.putLong(item.getProductId());
+            out.putInt(item.getQuantity());
+            out.putLong(toCents(item.getPrice()));
+            putString(out, item.getProductName());
+            putString(out, item.getProductImageUrl());
+            putString(out, item.getCurrency());
+            putTime(out, item.getCreatedAt());
+            putTime(out, item.getUpdatedAt());
+        }
+    }
+
+    private CartDto decode(ByteBuffer in, int[] pos) {
+        Long id = in.getLong(pos[0]);
+        long userId = in.getLong(pos[0] + 8);
+        long version = in.getLong(pos[0] + 16);
+        pos[0] += 24;
+
+        CartDto cart = CartDto.builder()
+                .id(id)
+                .userId(userId != NULL_LONG ? userId : null)
+                .version(version != NULL_LONG ? version : null)
+                .sessionId(getString(in, pos))
+                .status(getString(in, pos))
+                .build();
+        cart.setTotalItems(in.getInt(pos[0]));
+        cart.setTotalPrice(in.getLong(pos[0] + 4) / 100.0);
+        pos[0] += 12;
+        cart.setCurrency(getString(in, pos));
+        cart.setAnonymous(in.get(pos[0]) == 1);
+        pos[0] += 1;
+        cart.setExpiresAt(getTime(in, pos));
+        cart.setCreatedAt(getTime(in, pos));
+        cart.setUpdatedAt(getTime(in, pos));
+
+        int itemCount = in.getInt(pos[0]);
+        pos[0] += 4;
+        List<CartItemDto> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            long itemId = in.getLong(pos[0]);
+            long productId = in.getLong(pos[0] + 8);
+            int quantity = in.getInt(pos[0] + 16);
+            long priceCents = in.getLong(pos[0] + 20);
+            pos[0] += 28;
+
+            items.add(CartItemDto.builder()
+                    .id(itemId != NULL_LONG ? itemId : null)
+                    .productId(productId)
+                    .quantity(quantity)
+                    .price(priceCents / 100.0)
+                    .totalPrice(priceCents * quantity / 100.0)
+                    .productName(getString(in, pos))
+                    .productImageUrl(getString(in, pos))
+                    .currency(getString(in, pos))
+                    .createdAt(getTime(in, pos))
+                    .updatedAt(getTime(in, pos))
+                    .build());
+        }
+        cart.setItems(items);
+        return cart;
+    }
+
+    private boolean keyMatches(ByteBuffer in, int[] pos, String key) {
+        int length = in.getShort(pos[0]);
+        if (length != key.length()) {
+            return false;
+        }
+        // Keys are ASCII ("u:<id>" / "s:<uuid>"), so they can be compared without decoding
+        for (int i = 0; i < length; i++) {
+            if (in.get(pos[0] + 2 + i) != (byte) key.charAt(i)) {
+                return false;
+            }
+        }
+        pos[0] += 2 + length;
+        return true;
+    }
+
+    private void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new BufferOverflowException();
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private String getString(ByteBuffer in, int[] pos) {
+        int length = in.getShort(pos[0]);
+        pos[0] += 2;
+        if (length < 0) {
+            return null;
+        }
+        byte[] scratch = stringScratch.get();
+        in.get(pos[0], scratch, 0, length);
+        pos[0] += length;
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void putTime(ByteBuffer out, LocalDateTime value) {
+        out.putLong(value != null ? value.toInstant(ZoneOffset.UTC).toEpochMilli() : NULL_LONG);
+    }
+
+    private LocalDateTime getTime(ByteBuffer in, int[] pos) {
+        long millis = in.getLong(pos[0]);
+        pos[0] += 8;
+        if (millis == NULL_LONG) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private long toCents(Double amount) {
+        return amount != null ? Math.round(amount * 100) : 0L;
+    }
+
+    private long crc(ByteBuffer in, int offset, int length) {
+        byte[] scratch = stringScratch.get();
+        in.get(offset, scratch, 0, length);
+        return crc(scratch, length);
+    }
+
+    private long crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    private String keyOf(String sessionId, Long userId) {
+        return userId != null ? "u:" + userId : "s:" + sessionId;
+    }
+
+    private int slotFor(String key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), slotCount);
+    }
+
+    private ReentrantReadWriteLock lockFor(int slot) {
+        return locks[slot & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,172 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.serviceclient.InternalToken;
+import com.pruebatecnica.serviceclient.ServiceInstanceSelector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderClient {
+    
+    private final ServiceInstanceSelector instanceSelector;
+    private final RestTemplate restTemplate;
+    private final InternalToken internalToken;
+    
+    // The lines go to order-service's internal checkout endpoint, which takes the prices just revalidated
+    // here instead of looking the products up again.
+    // Rejections from order-service (4xx) surface as IllegalArgumentException with its message; anything
+    // else (unreachable, 5xx, timeout) as IllegalStateException, since the order may or may not exist
+    public OrderInfo createOrder(CreateOrderRequest request, String idempotencyKey, Long userId, String userEmail) {
+        try (ServiceInstanceSelector.Lease instance = instanceSelector.acquire("order-service")) {
+            if (instance == null) {
+                throw new IllegalStateException("Servicio de órdenes no disponible");
+            }
+            return createOrder(instance, request, idempotencyKey, userId, userEmail);
+        }
+    }
+    
+    private OrderInfo createOrder(ServiceInstanceSelector.Lease instance, CreateOrderRequest request, String idempotencyKey,
+                                  Long userId, String userEmail) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Idempotency-Key", idempotencyKey);
+        headers.set(InternalToken.HEADER, internalToken.value());
+        headers.set("X-User-Id", String.valueOf(userId));
+        if (userEmail != null) {
+            headers.set("X-User-Email", userEmail);
+        }
+        
+        String url = instance.getUrl() + "/internal/orders/checkout";
+        log.info("Creating order with {} items at {} (key {})", request.getItems().size(), url, idempotencyKey);
+        
+        try {
+            ApiResponse<?> response = restTemplate.exchange(url, HttpMethod.POST,
+                    new HttpEntity<>(request, headers), ApiResponse.class).getBody();
+            
+            if (response == null || !response.isSuccess() || !(response.getData() instanceof Map<?, ?> orderData)) {
+                throw new IllegalStateException("Respuesta inválida del servicio de órdenes");
+            }
+            
+            return toOrderInfo(orderData);
+            
+        } catch (HttpClientErrorException e) {
+            ApiResponse<?> body = e.getResponseBodyAs(ApiResponse.class);
+            String message = body != null && body.getMessage() != null ? body.getMessage() : "Orden rechazada";
+            log.warn("Order service rejected checkout {}: {}", idempotencyKey, message);
+            throw new IllegalArgumentException(message);
+            
+        } catch (RestClientException e) {
+            instance.recordFailure(e);
+            log.error("Error creating order for checkout {}: {}", idempotencyKey, e.getMessage());
+            throw new IllegalStateException("Servicio de órdenes no disponible", e);
+        }
+    }
+    
+    // The order created under the checkout's idempotency key, or null if order-service has none.
+    // Any failure to get an answer throws IllegalStateException
+    public OrderInfo findCheckoutOrder(String idempotencyKey, Long userId) {
+        try (ServiceInstanceSelector.Lease instance = instanceSelector.acquire("order-service")) {
+            if (instance == null) {
+                throw new IllegalStateException("Servicio de órdenes no disponible");
+            }
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(InternalToken.HEADER, internalToken.value());
+            headers.set("X-User-Id", String.valueOf(userId));
+            String url = instance.getUrl() + "/internal/orders/checkout/" + idempotencyKey;
+            
+            try {
+                ApiResponse<?> response = restTemplate.exchange(url, HttpMethod.GET,
+                        new HttpEntity<>(headers), ApiResponse.class).getBody();
+                
+                if (response == null || !response.isSuccess() || !(response.getData() instanceof Map<?, ?> orderData)) {
+                    throw new IllegalStateException("Respuesta inválida del servicio de órdenes");
+                }
+                return toOrderInfo(orderData);
+                
+            } catch (HttpClientErrorException.NotFound e) {
+                return null;
+                
+            } catch (RestClientException e) {
+                instance.recordFailure(e);
+                log.error("Error looking up order for checkout {}: {}", idempotencyKey, e.getMessage());
+                throw new IllegalStateException("Servicio de órdenes no disponible", e);
+            }
+        }
+    }
+    
+    private static OrderInfo toOrderInfo(Map<?, ?> orderData) {
+        return OrderInfo.builder()
+                .id(Long.valueOf(orderData.get("id").toString()))
+                .orderNumber((String) orderData.get("orderNumber"))
+                .status((String) orderData.get("status"))
+                .totalItems((Integer) orderData.get("totalItems"))
+                .total(orderData.get("total") != null ? ((Number) orderData.get("total")).doubleValue() : null)
+                .currency((String) orderData.get("currency"))
+                .build();
+    }
+    
+    @lombok.Data
+    @lombok.Builder
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class CreateOrderRequest {
+        private List<OrderItemRequest> items;
+        private String notes;
+        private String shippingAddress;
+        private String billingAddress;
+        private String paymentMethod;
+        private String paymentReference;
+    }
+    
+    @lombok.Data
+    @lombok.Builder
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class OrderItemRequest {
+        private Long productId;
+        private Integer quantity;
+        private String productName;
+        private String productImageUrl;
+        private Double price;
+        private String currency;
+    }
+    
+    @lombok.Data
+    @lombok.Builder
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class OrderInfo {
+        private Long id;
+        private String orderNumber;
+        private String status;
+        private Integer totalItems;
+        private Double total;
+        private String currency;
+    }
+    
+    @lombok.Data
+    @lombok.Builder
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class ApiResponse<T> {
+        private boolean success;
+        private int httpStatus;
+        private String appCode;
+        private String message;
+        private T data;
+    }
+}
@@ -0,0 +1,17 @@
+package com.pruebatecnica.cartservice.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Random (v4) UUIDs: uniformly spread keys, so inserts land all over idx_carts_session_id
+@Component
+@ConditionalOnProperty(name = "cart.session.id-strategy", havingValue = "random")
+public class RandomSessionIdGenerator implements SessionIdGenerator {
+    
+    @Override
+    public String generate() {
+        return UUID.randomUUID().toString();
+    }
+}
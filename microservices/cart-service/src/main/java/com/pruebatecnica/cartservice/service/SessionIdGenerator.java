@@ -0,0 +1,7 @@
+package com.pruebatecnica.cartservice.service;
+
+// Strategy for anonymous cart session ids, selected with cart.session.id-strategy
+public interface SessionIdGenerator {
+    
+    String generate();
+}
@@ -0,0 +1,45 @@
+package com.pruebatecnica.cartservice.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// UUIDv7-style ids: 48-bit Unix millis, then a 12-bit sequence, then 62 random bits. Ids are monotonic
+// across threads, so new carts append to the right edge of idx_carts_session_id instead of splitting
+// random pages. The random part still makes them unguessable; each thread has its own SecureRandom,
+// so there is no contention on the shared instance behind UUID.randomUUID().
+@Component
+@ConditionalOnProperty(name = "cart.session.id-strategy", havingValue = "time-ordered", matchIfMissing = true)
+public class TimeOrderedSessionIdGenerator implements SessionIdGenerator {
+    
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+    
+    // millis << 12 | sequence of the last issued id
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+    
+    @Override
+    public String generate() {
+        long timestampAndSequence = nextTimestampAndSequence();
+        long millis = timestampAndSequence >>> 12;
+        long sequence = timestampAndSequence & 0xFFF;
+        
+        long mostSigBits = (millis << 16) | 0x7000L | sequence;
+        long leastSigBits = (RANDOM.get().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+    
+    // Same millisecond: bump the sequence; when it overflows it carries into the timestamp, which stays monotonic
+    private long nextTimestampAndSequence() {
+        long now = System.currentTimeMillis() << 12;
+        while (true) {
+            long last = lastTimestampAndSequence.get();
+            long next = Math.max(now, last + 1);
+            if (lastTimestampAndSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.dto.AddToCartRequest;
+import com.pruebatecnica.cartservice.dto.CartDto;
+import com.pruebatecnica.cartservice.dto.CartItemDto;
+import com.pruebatecnica.cartservice.dto.CartOperationRequest;
+import com.pruebatecnica.serviceclient.ProductInfo;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// Optional write-behind storage for hot carts (cart.store.write-behind.enabled).
+// Active carts live in memory, sharded by userId/sessionId hash; reads and mutations are served
+// from there and every mutation is queued as a CartOperationRequest. A scheduled flush replays the
+// queued operations per cart through CartService.applyOperations, so MySQL stays the source of truth.
+// Durability: at most flush-interval-ms of mutations can be lost on a crash; carts are flushed
+// synchronously before checkout (flush-on-checkout) and on graceful shutdown. After a restart the
+// store is empty and reloads each cart from the database on first access.
+@Component
+@Slf4j
+public class WriteBehindCartStore {
+
+    private final CartService cartService;
+    private final ProductService productService;
+    private final CartMutationExecutor mutationExecutor;
+    private final boolean enabled;
+    private final boolean flushOnCheckout;
+    private final long maxIdleMs;
+    private final Shard[] shards;
+
+    public WriteBehindCartStore(CartService cartService,
+                                ProductService productService,
+                                CartMutationExecutor mutationExecutor,
+                                @Value("${cart.store.write-behind.enabled:false}") boolean enabled,
+                                @Value("${cart.store.write-behind.shards:16}") int shardCount,
+                                @Value("${cart.store.write-behind.flush-on-checkout:true}") boolean flushOnCheckout,
+                                @Value("${cart.store.write-behind.max-idle-ms:1800000}") long maxIdleMs) {
+        this.cartService = cartService;
+        this.productService = productService;
+        this.mutationExecutor = mutationExecutor;
+        this.enabled = enabled;
+        this.flushOnCheckout = flushOnCheckout;
+        this.maxIdleMs = maxIdleMs;
+
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1) << 1);
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CartDto getCart(String sessionId, Long userId) {
+        CachedCart cached = lockCart(sessionId, userId);
+        Shard shard = shardFor(cached.key);
+        try {
+            return copyOf(cached.view);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public CartDto addToCart(AddToCartRequest request, Long userId) {
+        var productInfo = productService.getProductInfo(request.getProductId());
+        if (productInfo == null) {
+            throw new IllegalArgumentException("Producto no encontrado con ID: " + request.getProductId());
+        }
+
+        CartOperationRequest operation = CartOperationRequest.builder()
+                .type(CartOperationRequest.OperationType.ADD)
+                .productId(request.getProductId())
+                .quantity(request.getQuantity())
+                .build();
+        return mutate(request.getSessionId(), userId, List.of(operation), Map.of(productInfo.getId(), productInfo));
+    }
+
+    public CartDto updateCartItem(String sessionId, Long userId, Long productId, Integer quantity) {
+        CartOperationRequest operation = CartOperationRequest.builder()
+                .type(CartOperationRequest.OperationType.SET)
+                .productId(productId)
+                .quantity(Math.max(quantity, 0))
+                .build();
+        return mutate(sessionId, userId, List.of(operation), Map.of());
+    }
+
+    public CartDto removeFromCart(String sessionId, Long userId, Long productId) {
+        CartOperationRequest operation = CartOperationRequest.builder()
+                .type(CartOperationRequest.OperationType.REMOVE)
+                .productId(productId)
+                .build();
+        return mutate(sessionId, userId, List.of(operation), Map.of());
+    }
+
+    public CartDto applyOperations(String sessionId, Long userId, List<CartOperationRequest> operations) {
+        Set<Long> addIds = operations.stream()
+                .filter(op -> op.getType() != CartOperationRequest.OperationType.REMOVE)
+                .map(CartOperationRequest::getProductId)
+                .collect(Collectors.toSet());
+        return mutate(sessionId, userId, operations, productService.getProductsInfo(addIds));
+    }
+
+    public void clearCart(String sessionId, Long userId) {
+        // Rare operation: push pending work, clear in the database and drop the cached copy
+        flushCart(sessionId, userId);
+        mutationExecutor.run("clear", sessionId, userId, () -> cartService.clearCart(sessionId, userId));
+        invalidate(keyOf(sessionId, userId));
+    }
+
+    public void flushBeforeCheckout(String sessionId, Long userId) {
+        if (enabled && flushOnCheckout) {
+            flushCart(sessionId, userId);
+        }
+    }
+
+    public void evict(String sessionId, Long userId) {
+        if (enabled) {
+            invalidate(keyOf(sessionId, userId));
+        }
+    }
+
+    // Returns once every mutation acknowledged so far is in the database, including a batch the scheduled
+    // flush already took and is still writing; checkout, merge and revalidation read the database right after
+    public void flushCart(String sessionId, Long userId) {
+        if (!enabled) {
+            return;
+        }
+        String key = keyOf(sessionId, userId);
+        Shard shard = shardFor(key);
+        shard.lock.lock();
+        try {
+            while (true) {
+                CachedCart cached = shard.carts.get(key);
+                if (cached == null) {
+                    return;
+                }
+                if (cached.flushing) {
+                    cached.settled.awaitUninterruptibly();
+                    continue;
+                }
+                PendingFlush pending = drain(shard, key);
+                if (pending == null) {
+                    return;
+                }
+                
+                shard.lock.unlock();
+                boolean written;
+                try {
+                    written = write(shard, pending);
+                } finally {
+                    shard.lock.lock();
+                }
+                if (!written) {
+                    throw new IllegalStateException("No se pudo guardar el carrito, intente de nuevo");
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.store.write-behind.flush-interval-ms:1000}")
+    public void flushDirtyCarts() {
+        if (!enabled) {
+            return;
+        }
+
+        int flushed = 0;
+        for (Shard shard : shards) {
+            List<PendingFlush> batch = new ArrayList<>();
+            shard.lock.lock();
+            try {
+                for (String key : new ArrayList<>(shard.dirty)) {
+                    PendingFlush pending = drain(shard, key);
+                    if (pending != null) {
+                        batch.add(pending);
+                    }
+                }
+                evictIdle(shard);
+            } finally {
+                shard.lock.unlock();
+            }
+
+            // Database writes happen outside the shard lock so foreground requests are never blocked on MySQL
+            for (PendingFlush pending : batch) {
+                write(shard, pending);
+                flushed++;
+            }
+        }
+
+        if (flushed > 0) {
+            log.debug("Flushed {} dirty carts to the database", flushed);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (enabled) {
+            log.info("Flushing in-memory carts before shutdown");
+            flushDirtyCarts();
+        }
+    }
+
+    private CartDto mutate(String sessionId, Long userId, List<CartOperationRequest> operations,
+                           Map<Long, ProductInfo> products) {
+        CachedCart cached = lockCart(sessionId, userId);
+        Shard shard = shardFor(cached.key);
+        try {
+            // Validate every operation against the current view before touching it, so a batch applies atomically
+            Map<Long, CartItemDto> lines = new HashMap<>();
+            cached.view.getItems().forEach(item -> lines.put(item.getProductId(), item.toBuilder().build()));
+            for (CartOperationRequest operation : operations) {
+                apply(lines, operation, products);
+            }
+
+            cached.view.setItems(new ArrayList<>(lines.values()));
+            recomputeTotals(cached.view);
+            cached.view.setUpdatedAt(LocalDateTime.now());
+            cached.pending.addAll(operations);
+            shard.dirty.add(cached.key);
+
+            return copyOf(cached.view);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void apply(Map<Long, CartItemDto> lines, CartOperationRequest operation,
+                       Map<Long, ProductInfo> products) {
+        Long productId = operation.getProductId();
+        CartItemDto line = lines.get(productId);
+
+        switch (operation.getType()) {
+            case ADD -> {
+                if (operation.getQuantity() == null || operation.getQuantity() < 1) {
+                    throw new IllegalArgumentException("Cantidad inválida para el producto " + productId);
+                }
+                if (line != null) {
+                    setQuantity(line, line.getQuantity() + operation.getQuantity());
+                } else {
+                    lines.put(productId, newLine(products.get(productId), productId, operation.getQuantity()));
+                }
+            }
+            case SET -> {
+                if (operation.getQuantity() == null || operation.getQuantity() < 0) {
+                    throw new IllegalArgumentException("Cantidad inválida para el producto " + productId);
+                }
+                if (operation.getQuantity() == 0) {
+                    lines.remove(productId);
+                } else if (line != null) {
+                    setQuantity(line, operation.getQuantity());
+                } else if (products.containsKey(productId)) {
+                    lines.put(productId, newLine(products.get(productId), productId, operation.getQuantity()));
+                } else {
+                    throw new IllegalArgumentException("Producto no encontrado en el carrito");
+                }
+            }
+            case REMOVE -> lines.remove(productId);
+        }
+    }
+
+    private CartItemDto newLine(ProductInfo productInfo, Long productId, int quantity) {
+        if (productInfo == null) {
+            throw new IllegalArgumentException("Producto no encontrado con ID: " + productId);
+        }
+        CartItemDto line = CartItemDto.builder()
+                .productId(productId)
+                .productName(productInfo.getName())
+                .productImageUrl(productInfo.getImageUrl())
+                .price(productInfo.getPriceCents() / 100.0)
+                .currency(productInfo.getCurrency())
+                .createdAt(LocalDateTime.now())
+                .build();
+        setQuantity(line, quantity);
+        return line;
+    }
+
+    private void setQuantity(CartItemDto line, int quantity) {
+        line.setQuantity(quantity);
+        line.setTotalPrice(priceCents(line) * quantity / 100.0);
+        line.setUpdatedAt(LocalDateTime.now());
+    }
+
+    private void recomputeTotals(CartDto view) {
+        int totalItems = 0;
+        long totalPriceCents = 0;
+        for (CartItemDto item : view.getItems()) {
+            totalItems += item.getQuantity();
+            totalPriceCents += priceCents(item) * item.getQuantity();
+        }
+        view.setTotalItems(totalItems);
+        view.setTotalPrice(totalPriceCents / 100.0);
+    }
+
+    private long priceCents(CartItemDto item) {
+        return item.getPrice() != null ? Math.round(item.getPrice() * 100) : 0L;
+    }
+
+    // Returns the cart with its shard lock held; the caller must unlock it. Lookup and use happen under one
+    // lock hold, so eviction or invalidation can never leave a mutation on a copy that is no longer in the map
+    private CachedCart lockCart(String sessionId, Long userId) {
+        if (!enabled) {
+            throw new IllegalStateException("Write-behind cart store is disabled");
+        }
+        String key = keyOf(sessionId, userId);
+        Shard shard = shardFor(key);
+
+        shard.lock.lock();
+        CachedCart cached = shard.carts.get(key);
+        if (cached != null) {
+            cached.lastAccess = System.currentTimeMillis();
+            return cached;
+        }
+        shard.lock.unlock();
+
+        // Miss: read from MySQL outside the lock, then keep whichever copy got installed first
+        CartDto view = cartService.getCart(sessionId, userId);
+        shard.lock.lock();
+        String cartSessionId = sessionId != null ? sessionId : view.getSessionId();
+        cached = shard.carts.computeIfAbsent(key, k -> new CachedCart(k, cartSessionId, userId, view, shard.lock.newCondition()));
+        cached.lastAccess = System.currentTimeMillis();
+        return cached;
+    }
+
+    // Must be called with the shard lock held. A cart already being written stays dirty: its next batch
+    // goes out after the current one, never alongside it
+    private PendingFlush drain(Shard shard, String key) {
+        CachedCart cached = shard.carts.get(key);
+        if (cached != null && cached.flushing) {
+            return null;
+        }
+        shard.dirty.remove(key);
+        if (cached == null || cached.pending.isEmpty()) {
+            return null;
+        }
+        List<CartOperationRequest> operations = new ArrayList<>(cached.pending);
+        cached.pending.clear();
+        cached.flushing = true;
+        return new PendingFlush(cached, operations);
+    }
+
+    // Returns false when the batch could not be written and was queued again for the next flush
+    private boolean write(Shard shard, PendingFlush pending) {
+        CachedCart cached = pending.cart;
+        List<CartOperationRequest> operations = pending.operations;
+        CartDto persisted = null;
+        int written = 0;
+        try {
+            try {
+                persisted = persist(cached, operations);
+                written = operations.size();
+            } catch (IllegalArgumentException e) {
+                // The batch holds operations of several acknowledged requests; one that became invalid (e.g. a
+                // product deactivated since) must not take the others down with it. Replay them one by one and
+                // drop only the ones that are rejected
+                log.warn("Batch of {} cart operations for {} rejected, replaying one by one: {}",
+                        operations.size(), cached.key, e.getMessage());
+                for (CartOperationRequest operation : operations) {
+                    try {
+                        persisted = persist(cached, List.of(operation));
+                    } catch (IllegalArgumentException invalid) {
+                        log.warn("Discarding {} of product {} for {}: {}",
+                                operation.getType(), operation.getProductId(), cached.key, invalid.getMessage());
+                    }
+                    written++;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error flushing cart {}, will retry: {}", cached.key, e.getMessage());
+            shard.lock.lock();
+            try {
+                cached.flushing = false;
+                cached.pending.addAll(0, operations.subList(written, operations.size()));
+                shard.dirty.add(cached.key);
+                cached.settled.signalAll();
+            } finally {
+                shard.lock.unlock();
+            }
+            return false;
+        }
+        
+        shard.lock.lock();
+        try {
+            cached.flushing = false;
+            // Adopt the database view (ids, timestamps) unless newer mutations arrived meanwhile; if nothing
+            // could be written the cached view is wrong, so the next access reloads it
+            if (cached.pending.isEmpty()) {
+                if (persisted != null) {
+                    cached.view = persisted;
+                } else {
+                    shard.carts.remove(cached.key, cached);
+                }
+            }
+            cached.settled.signalAll();
+        } finally {
+            shard.lock.unlock();
+        }
+        return true;
+    }
+    
+    private CartDto persist(CachedCart cached, List<CartOperationRequest> operations) {
+        return mutationExecutor.execute("flush", cached.sessionId, cached.userId,
+                () -> cartService.applyOperations(cached.sessionId, cached.userId, operations));
+    }
+
+    // Must be called with the shard lock held
+    private void evictIdle(Shard shard) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, CachedCart>> it = shard.carts.entrySet().iterator();
+        while (it.hasNext()) {
+            CachedCart cached = it.next().getValue();
+            if (cached.pending.isEmpty() && !cached.flushing && now - cached.lastAccess > maxIdleMs) {
+                it.remove();
+            }
+        }
+    }
+
+    // Carts with queued or in-flight operations are kept: dropping them would lose acknowledged mutations,
+    // and their view is replaced by the database copy once those are written
+    private void invalidate(String key) {
+        Shard shard = shardFor(key);
+        shard.lock.lock();
+        try {
+            CachedCart cached = shard.carts.get(key);
+            if (cached != null && cached.pending.isEmpty() && !cached.flushing) {
+                shard.carts.remove(key);
+                shard.dirty.remove(key);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private String keyOf(String sessionId, Long userId) {
+        if (userId != null) {
+            return "u:" + userId;
+        }
+        if (sessionId != null) {
+            return "s:" + sessionId;
+        }
+        throw new IllegalArgumentException("Session ID o User ID es requerido");
+    }
+
+    private Shard shardFor(String key) {
+        int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+
+    private CartDto copyOf(CartDto view) {
+        List<CartItemDto> items = view.getItems().stream()
+                .map(item -> item.toBuilder().build())
+                .collect(Collectors.toList());
+        return view.toBuilder().items(items).build();
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, CachedCart> carts = new HashMap<>();
+        private final Set<String> dirty = new LinkedHashSet<>();
+    }
+
+    private static final class CachedCart {
+        private final String key;
+        private final String sessionId;
+        private final Long userId;
+        private final List<CartOperationRequest> pending = new ArrayList<>();
+        // Signalled (under the shard lock) whenever a write of this cart finishes
+        private final Condition settled;
+        private CartDto view;
+        private boolean flushing;
+        private long lastAccess = System.currentTimeMillis();
+
+        private CachedCart(String key, String sessionId, Long userId, CartDto view, Condition settled) {
+            this.key = key;
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.view = view;
+            this.settled = settled;
+        }
+    }
+
+    private record PendingFlush(CachedCart cart, List<CartOperationRequest> operations) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.pruebatecnica.cartservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.THREADS;
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.runConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartLockManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void stripeCountIsRoundedUpToAPowerOfTwo() {
+        assertThat(new CartLockManager(true, 1000, meterRegistry).getStripeCount()).isEqualTo(1024);
+        assertThat(new CartLockManager(true, 1024, meterRegistry).getStripeCount()).isEqualTo(1024);
+        assertThat(new CartLockManager(true, 3, meterRegistry).getStripeCount()).isEqualTo(4);
+    }
+
+    @Test
+    void disabledManagerHandsOutNoLocks() {
+        CartLockManager lockManager = new CartLockManager(false, 16, meterRegistry);
+
+        assertThat(lockManager.lock("session", 1L)).isNull();
+        lockManager.unlock(null);
+        assertThat(lockManager.getAcquisitions()).isZero();
+    }
+
+    @Test
+    void userIdTakesPrecedenceOverSessionId() {
+        CartLockManager lockManager = new CartLockManager(true, 1024, meterRegistry);
+
+        ReentrantLock byUser = lockManager.lock(null, 42L);
+        lockManager.unlock(byUser);
+        ReentrantLock byUserAndSession = lockManager.lock("any-session", 42L);
+        lockManager.unlock(byUserAndSession);
+
+        assertThat(byUserAndSession).isSameAs(byUser);
+    }
+
+    @Test
+    void sameCartMutationsAreSerialized() throws Exception {
+        CartLockManager lockManager = new CartLockManager(true, 1024, meterRegistry);
+        int iterations = 20_000;
+        int[] counter = {0};
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < iterations; i++) {
+                ReentrantLock lock = lockManager.lock("shared-session", null);
+                try {
+                    counter[0]++;
+                } finally {
+                    lockManager.unlock(lock);
+                }
+            }
+        });
+
+        assertThat(counter[0]).isEqualTo(THREADS * iterations);
+        assertThat(lockManager.getAcquisitions()).isEqualTo((long) THREADS * iterations);
+        assertThat(meterRegistry.get("cart.lock.contended").counter().count()).isEqualTo(lockManager.getContended());
+    }
+
+    @Test
+    void distinctCartsRarelyShareAStripe() {
+        CartLockManager lockManager = new CartLockManager(true, 1024, meterRegistry);
+        Set<ReentrantLock> stripes = new HashSet<>();
+
+        for (long userId = 1; userId <= 1024; userId++) {
+            ReentrantLock lock = lockManager.lock(null, userId);
+            lockManager.unlock(lock);
+            stripes.add(lock);
+        }
+
+        // 1024 sequential ids over 1024 stripes: a good spread keeps unrelated carts on separate locks
+        assertThat(stripes.size()).isGreaterThan(600);
+    }
+
+    @Test
+    void threadsWorkingOnDifferentCartsScaleWithoutContention() throws Exception {
+        CartLockManager lockManager = new CartLockManager(true, 1024, meterRegistry);
+        int iterations = 50_000;
+
+        // Each thread mutates its own carts, as on a busy storefront with many independent sessions
+        runConcurrently(thread -> {
+            for (int i = 0; i < iterations; i++) {
+                long userId = (long) thread * iterations + i;
+                ReentrantLock lock = lockManager.lock(null, userId);
+                lockManager.unlock(lock);
+            }
+        });
+
+        long acquisitions = lockManager.getAcquisitions();
+        assertThat(acquisitions).isEqualTo((long) THREADS * iterations);
+        // Only accidental stripe collisions between concurrent threads contend
+        assertThat(lockManager.getContended()).isLessThan(acquisitions / 20);
+    }
+}
@@ -0,0 +1,91 @@
+package com.pruebatecnica.cartservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Shared harness for the concurrency and id-generator tests of this module: threads released together by a
+// latch, ids collected across threads, and the issue-order check for sortable ids
+final class ConcurrencyTestSupport {
+
+    static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private ConcurrencyTestSupport() {
+    }
+
+    // Runs the task on THREADS threads started at the same time; rethrows the first failure
+    static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Every id issued by perThread calls on each of THREADS threads; duplicates collapse
+    static Set<String> generateConcurrently(Supplier<String> generator, int perThread) throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        runConcurrently(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                ids.add(generator.get());
+            }
+        });
+        return ids;
+    }
+
+    // Issues count ids on one thread and checks each sorts after the previous one
+    static void assertIncreasingInIssueOrder(Supplier<String> generator, int count) {
+        String previous = generator.get();
+        for (int i = 0; i < count; i++) {
+            String next = generator.get();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    // Single-thread ids per second over count calls, timed after an untimed round that warms up the JIT
+    static double idsPerSecond(Supplier<String> generator, int count) {
+        issue(generator, count);
+        long startedAt = System.nanoTime();
+        long chars = issue(generator, count);
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        // Using the output keeps the calls from being optimised away
+        assertThat(chars).isPositive();
+        return count / seconds;
+    }
+
+    private static long issue(Supplier<String> generator, int count) {
+        long chars = 0;
+        for (int i = 0; i < count; i++) {
+            chars += generator.get().length();
+        }
+        return chars;
+    }
+
+    interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
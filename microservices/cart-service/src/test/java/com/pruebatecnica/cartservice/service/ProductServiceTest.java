@@ -0,0 +1,168 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pruebatecnica.serviceclient.InternalHttpClient;
+import com.pruebatecnica.serviceclient.ProductClient;
+import com.pruebatecnica.serviceclient.ProductInfo;
+import com.pruebatecnica.serviceclient.ProductRequestHedger;
+import com.pruebatecnica.serviceclient.ProductServiceGuard;
+import com.pruebatecnica.serviceclient.ProductServiceUnavailableException;
+import com.pruebatecnica.serviceclient.ServiceInstanceSelector;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Runs the real client stack (ProductClient) against a stub product-service: a 4xx means "no such product",
+// every other failure must surface as ProductServiceUnavailableException
+class ProductServiceTest {
+
+    private static final String PRODUCT_JSON =
+            "{\"id\":%d,\"name\":\"Producto %d\",\"imageUrl\":\"https://example.com/%d.png\",\"priceCents\":1000,\"currency\":\"GTQ\",\"isActive\":true}";
+
+    private HttpServer server;
+    private DiscoveryClient discoveryClient;
+    private ProductService productService;
+    private final AtomicInteger batchCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/products/", this::handle);
+        server.start();
+
+        discoveryClient = mock(DiscoveryClient.class);
+        when(discoveryClient.getInstances("product-service")).thenReturn(List.of(
+                new DefaultServiceInstance("product-1", "product-service", "localhost", server.getAddress().getPort(), false)));
+
+        productService = newProductService(200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void productIsReturnedWhenFound() {
+        ProductInfo product = productService.getProductInfo(1L);
+
+        assertThat(product.getId()).isEqualTo(1L);
+        assertThat(product.getPriceCents()).isEqualTo(1000);
+    }
+
+    @Test
+    void notFoundProductIsNull() {
+        assertThat(productService.getProductInfo(404L)).isNull();
+    }
+
+    @Test
+    void serverErrorIsNotReadAsMissingProduct() {
+        assertThatThrownBy(() -> productService.getProductInfo(500L))
+                .isInstanceOf(ProductServiceUnavailableException.class);
+    }
+
+    @Test
+    void unreachableServiceIsNotReadAsMissingProduct() {
+        server.stop(0);
+
+        assertThatThrownBy(() -> productService.getProductInfo(1L))
+                .isInstanceOf(ProductServiceUnavailableException.class);
+    }
+
+    @Test
+    void noRegisteredInstanceIsNotReadAsMissingProduct() {
+        when(discoveryClient.getInstances("product-service")).thenReturn(List.of());
+
+        assertThatThrownBy(() -> productService.getProductInfo(1L))
+                .isInstanceOf(ProductServiceUnavailableException.class);
+    }
+
+    @Test
+    void batchReturnsTheProductsFound() {
+        assertThat(productService.getProductsInfo(List.of(1L, 2L))).containsOnlyKeys(1L, 2L);
+    }
+
+    @Test
+    void batchClientErrorYieldsNoProducts() {
+        assertThat(productService.getProductsInfo(List.of(1L, 404L))).isEmpty();
+    }
+
+    @Test
+    void batchServerErrorIsNotReadAsMissingProducts() {
+        assertThatThrownBy(() -> productService.getProductsInfo(List.of(1L, 500L)))
+                .isInstanceOf(ProductServiceUnavailableException.class);
+        assertThatThrownBy(() -> productService.getProductsInfoAsync(List.of(1L, 500L)).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(ProductServiceUnavailableException.class);
+    }
+
+    @Test
+    void largeBatchIsSplitIntoChunksOfMaxBatchSize() {
+        productService = newProductService(2);
+
+        assertThat(productService.getProductsInfo(List.of(1L, 2L, 3L, 4L, 5L))).containsOnlyKeys(1L, 2L, 3L, 4L, 5L);
+        assertThat(batchCalls.get()).isEqualTo(3);
+    }
+
+    private ProductService newProductService(int maxBatchSize) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new ProductService(new ProductClient(
+                new ServiceInstanceSelector(discoveryClient),
+                new InternalHttpClient(new ObjectMapper(), meterRegistry, 1000, 2000, false, 5, 60),
+                new ProductServiceGuard(meterRegistry, false, 20, 20),
+                new ProductRequestHedger(meterRegistry, false, 100),
+                maxBatchSize));
+    }
+
+    // /api/products/{id} and /api/products/batch?ids=...; id 404 is unknown and id 500 breaks the server
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        if (path.endsWith("/batch")) {
+            batchCalls.incrementAndGet();
+        }
+        List<String> ids = path.endsWith("/batch")
+                ? List.of(query.substring("ids=".length()).split(","))
+                : List.of(path.substring("/api/products/".length()));
+
+        if (ids.contains("500")) {
+            respond(exchange, 500, "{\"success\":false,\"httpStatus\":500,\"message\":\"boom\"}");
+        } else if (ids.contains("404")) {
+            respond(exchange, 404, "{\"success\":false,\"httpStatus\":404,\"message\":\"Producto no encontrado\"}");
+        } else {
+            List<String> products = ids.stream()
+                    .map(Long::valueOf)
+                    .map(id -> PRODUCT_JSON.formatted(id, id, id))
+                    .toList();
+            String data = path.endsWith("/batch") ? "[" + String.join(",", products) + "]" : products.get(0);
+            respond(exchange, 200, "{\"success\":true,\"httpStatus\":200,\"data\":" + data + "}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.pruebatecnica.cartservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.THREADS;
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.assertIncreasingInIssueOrder;
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.generateConcurrently;
+import static com.pruebatecnica.cartservice.service.ConcurrencyTestSupport.idsPerSecond;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedSessionIdGeneratorTest {
+
+    private final TimeOrderedSessionIdGenerator generator = new TimeOrderedSessionIdGenerator();
+
+    @Test
+    void idsAreVersion7RfcVariantUuids() {
+        UUID id = UUID.fromString(generator.generate());
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        // First 48 bits are the Unix millis the id was issued at
+        assertThat(id.getMostSignificantBits() >>> 16)
+                .isBetween(System.currentTimeMillis() - 1_000, System.currentTimeMillis() + 1_000);
+    }
+
+    @Test
+    void idsIncreaseInIssueOrderEvenWithinOneMillisecond() {
+        // Fixed-width lowercase hex: string order is the index order of idx_carts_session_id
+        assertIncreasingInIssueOrder(generator::generate, 100_000);
+    }
+
+    @Test
+    void issuesOverAMillionIdsPerSecondOnOneThread() {
+        double rate = idsPerSecond(generator::generate, 1_000_000);
+
+        System.out.printf("TimeOrderedSessionIdGenerator: %,.0f ids/s%n", rate);
+        assertThat(rate).isGreaterThan(1_000_000);
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        int perThread = 50_000;
+
+        assertThat(generateConcurrently(generator::generate, perThread)).hasSize(THREADS * perThread);
+    }
+
+    // Index-size comparison on a model of B-tree leaf pages: a full page is split in half unless the key goes
+    // past the rightmost one, where a fresh page is started instead (as InnoDB does for sequential inserts)
+    @Test
+    void timeOrderedIdsKeepIndexPagesFullerThanRandomIds() {
+        int inserts = 200_000;
+
+        LeafPages timeOrdered = new LeafPages(100);
+        for (int i = 0; i < inserts; i++) {
+            timeOrdered.insert(generator.generate());
+        }
+        LeafPages random = new LeafPages(100);
+        RandomSessionIdGenerator randomGenerator = new RandomSessionIdGenerator();
+        for (int i = 0; i < inserts; i++) {
+            random.insert(randomGenerator.generate());
+        }
+
+        assertThat(timeOrdered.fillFactor()).isGreaterThan(0.95);
+        assertThat(random.fillFactor()).isLessThan(0.80);
+        assertThat(timeOrdered.pageCount()).isLessThan(random.pageCount() * 3 / 4);
+        assertThat(timeOrdered.splits()).isZero();
+    }
+
+    private static final class LeafPages {
+        private final int capacity;
+        private final TreeMap<String, List<String>> pages = new TreeMap<>();
+        private int keys;
+        private int splits;
+
+        LeafPages(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void insert(String key) {
+            keys++;
+            Map.Entry<String, List<String>> entry = pages.floorEntry(key);
+            if (entry == null) {
+                entry = pages.firstEntry();
+                if (entry == null) {
+                    List<String> page = new ArrayList<>(List.of(key));
+                    pages.put(key, page);
+                    return;
+                }
+                // New smallest key: the first page now starts at it
+                pages.remove(entry.getKey());
+                pages.put(key, entry.getValue());
+                entry = pages.firstEntry();
+            }
+            List<String> page = entry.getValue();
+            int position = -(Collections.binarySearch(page, key) + 1);
+
+            if (page.size() < capacity) {
+                page.add(position, key);
+                return;
+            }
+            if (position == page.size() && pages.higherKey(entry.getKey()) == null) {
+                pages.put(key, new ArrayList<>(List.of(key)));
+                return;
+            }
+            splits++;
+            page.add(position, key);
+            List<String> upper = new ArrayList<>(page.subList(page.size() / 2, page.size()));
+            page.subList(page.size() / 2, page.size()).clear();
+            pages.put(upper.get(0), upper);
+        }
+
+        int pageCount() {
+            return pages.size();
+        }
+
+        int splits() {
+            return splits;
+        }
+
+        double fillFactor() {
+            return (double) keys / ((long) pages.size() * capacity);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.pruebatecnica.cartservice.service;
+
+import com.pruebatecnica.cartservice.dto.AddToCartRequest;
+import com.pruebatecnica.cartservice.dto.CartDto;
+import com.pruebatecnica.cartservice.dto.CartItemDto;
+import com.pruebatecnica.cartservice.dto.CartOperationRequest;
+import com.pruebatecnica.serviceclient.ProductInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Crash-recovery and flush behaviour of the write-behind store against an in-memory stand-in for MySQL.
+// A "crash" is modelled by dropping the store without its shutdown flush and starting a fresh one.
+class WriteBehindCartStoreTest {
+
+    private static final String SESSION = "session-1";
+
+    private final FakeCartDatabase database = new FakeCartDatabase();
+    private CartService cartService;
+    private ProductService productService;
+    private CartMutationExecutor mutationExecutor;
+
+    @BeforeEach
+    void setUp() {
+        cartService = mock(CartService.class);
+        when(cartService.getCart(any(), any())).thenAnswer(call -> database.read(call.getArgument(0)));
+        when(cartService.applyOperations(any(), any(), anyList()))
+                .thenAnswer(call -> database.apply(call.getArgument(0), call.getArgument(2)));
+
+        productService = mock(ProductService.class);
+        when(productService.getProductInfo(anyLong())).thenAnswer(call -> product(call.getArgument(0)));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        mutationExecutor = new CartMutationExecutor(meterRegistry, new CartLockManager(true, 16, meterRegistry));
+    }
+
+    @Test
+    void flushedMutationsSurviveACrash() {
+        WriteBehindCartStore store = newStore();
+        store.addToCart(add(1L, 2), null);
+        store.flushDirtyCarts();
+
+        // Crash: the store is gone without flushOnShutdown
+        WriteBehindCartStore restarted = newStore();
+
+        CartDto cart = restarted.getCart(SESSION, null);
+        assertThat(quantities(cart)).containsExactly(Map.entry(1L, 2));
+        assertThat(cart.getTotalItems()).isEqualTo(2);
+    }
+
+    @Test
+    void crashLosesOnlyMutationsSinceTheLastFlush() {
+        WriteBehindCartStore store = newStore();
+        store.addToCart(add(1L, 2), null);
+        store.flushDirtyCarts();
+        store.addToCart(add(2L, 1), null);
+        store.updateCartItem(SESSION, null, 1L, 5);
+
+        // Acknowledged in memory, not yet in the database
+        assertThat(quantities(store.getCart(SESSION, null))).containsOnly(Map.entry(1L, 5), Map.entry(2L, 1));
+        assertThat(quantities(database.read(SESSION))).containsOnly(Map.entry(1L, 2));
+
+        WriteBehindCartStore restarted = newStore();
+
+        assertThat(quantities(restarted.getCart(SESSION, null))).containsOnly(Map.entry(1L, 2));
+    }
+
+    @Test
+    void checkoutAndShutdownFlushesLoseNothing() {
+        WriteBehindCartStore store = newStore();
+        store.addToCart(add(1L, 1), null);
+        store.flushBeforeCheckout(SESSION, null);
+        assertThat(quantities(database.read(SESSION))).containsOnly(Map.entry(1L, 1));
+
+        store.addToCart(add(3L, 4), null);
+        store.flushOnShutdown();
+
+        WriteBehindCartStore restarted = newStore();
+        assertThat(quantities(restarted.getCart(SESSION, null))).containsOnly(Map.entry(1L, 1), Map.entry(3L, 4));
+    }
+
+    @Test
+    void rejectedFlushKeepsValidOperationsAndThoseQueuedWhileItWasRunning() throws Exception {
+        WriteBehindCartStore store = newStore();
+        store.addToCart(add(1L, 1), null);
+        store.addToCart(add(4L, 2), null);
+
+        // The first flush is held inside the "database" while another mutation arrives; meanwhile product 1
+        // is deactivated, so the batch is rejected and only its operation on product 1 may be lost
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch mutationQueued = new CountDownLatch(1);
+        when(cartService.applyOperations(eq(SESSION), any(), anyList()))
+                .thenAnswer(call -> {
+                    flushStarted.countDown();
+                    mutationQueued.await(5, TimeUnit.SECONDS);
+                    database.deactivate(1L);
+                    return database.apply(call.getArgument(0), call.getArgument(2));
+                })
+                .thenAnswer(call -> database.apply(call.getArgument(0), call.getArgument(2)));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(store::flushDirtyCarts);
+        assertThat(flushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        store.addToCart(add(2L, 3), null);
+        mutationQueued.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        store.flushDirtyCarts();
+
+        assertThat(quantities(database.read(SESSION))).containsOnly(Map.entry(4L, 2), Map.entry(2L, 3));
+        assertThat(quantities(store.getCart(SESSION, null))).containsOnly(Map.entry(4L, 2), Map.entry(2L, 3));
+    }
+
+    @Test
+    void checkoutFlushWaitsForTheScheduledFlushAlreadyRunning() throws Exception {
+        WriteBehindCartStore store = newStore();
+        store.addToCart(add(1L, 1), null);
+
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cartService.applyOperations(eq(SESSION), any(), anyList()))
+                .thenAnswer(call -> {
+                    flushStarted.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return database.apply(call.getArgument(0), call.getArgument(2));
+                })
+                .thenAnswer(call -> database.apply(call.getArgument(0), call.getArgument(2)));
+
+        CompletableFuture<Void> scheduled = CompletableFuture.runAsync(store::flushDirtyCarts);
+        assertThat(flushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        store.addToCart(add(2L, 3), null);
+
+        // The scheduled flush already drained product 1: checkout must not read the database before it lands
+        CompletableFuture<Void> checkout = CompletableFuture.runAsync(() -> store.flushBeforeCheckout(SESSION, null));
+        Thread.sleep(200);
+        assertThat(checkout).isNotDone();
+
+        release.countDown();
+        checkout.get(5, TimeUnit.SECONDS);
+        assertThat(quantities(database.read(SESSION))).containsOnly(Map.entry(1L, 1), Map.entry(2L, 3));
+        scheduled.get(5, TimeUnit.SECONDS);
+    }
+
+    private WriteBehindCartStore newStore() {
+        return new WriteBehindCartStore(cartService, productService, mutationExecutor, true, 4, true, 60_000);
+    }
+
+    private static AddToCartRequest add(Long productId, int quantity) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setSessionId(SESSION);
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        return request;
+    }
+
+    private static ProductInfo product(Long productId) {
+        return ProductInfo.builder()
+                .id(productId)
+                .name("Producto " + productId)
+                .imageUrl("https://example.com/" + productId + ".png")
+                .priceCents(1000)
+                .currency("GTQ")
+                .isActive(true)
+                .build();
+    }
+
+    private static Map<Long, Integer> quantities(CartDto cart) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        cart.getItems().forEach(item -> quantities.put(item.getProductId(), item.getQuantity()));
+        return quantities;
+    }
+
+    // carts/cart_items as seen through CartService: only what was flushed survives a restart
+    private static final class FakeCartDatabase {
+        private final Map<String, Map<Long, Integer>> carts = new HashMap<>();
+        private final Set<Long> deactivated = new HashSet<>();
+
+        synchronized void deactivate(Long productId) {
+            deactivated.add(productId);
+        }
+
+        synchronized CartDto read(String sessionId) {
+            Map<Long, Integer> lines = carts.getOrDefault(sessionId, Map.of());
+            List<CartItemDto> items = new ArrayList<>();
+            int totalItems = 0;
+            for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+                items.add(CartItemDto.builder()
+                        .productId(line.getKey())
+                        .productName("Producto " + line.getKey())
+                        .quantity(line.getValue())
+                        .price(10.0)
+                        .totalPrice(10.0 * line.getValue())
+                        .currency("GTQ")
+                        .build());
+                totalItems += line.getValue();
+            }
+            return CartDto.builder()
+                    .sessionId(sessionId)
+                    .status("ACTIVE")
+                    .totalItems(totalItems)
+                    .totalPrice(10.0 * totalItems)
+                    .currency("GTQ")
+                    .items(items)
+                    .build();
+        }
+
+        // Like the transactional CartService.applyOperations: all operations or none
+        synchronized CartDto apply(String sessionId, List<CartOperationRequest> operations) {
+            for (CartOperationRequest operation : operations) {
+                if (operation.getType() != CartOperationRequest.OperationType.REMOVE && deactivated.contains(operation.getProductId())) {
+                    throw new IllegalArgumentException("Producto no disponible: " + operation.getProductId());
+                }
+            }
+            Map<Long, Integer> lines = carts.computeIfAbsent(sessionId, key -> new LinkedHashMap<>());
+            for (CartOperationRequest operation : operations) {
+                switch (operation.getType()) {
+                    case ADD -> lines.merge(operation.getProductId(), operation.getQuantity(), Integer::sum);
+                    case SET -> {
+                        if (operation.getQuantity() == 0) {
+                            lines.remove(operation.getProductId());
+                        } else {
+                            lines.put(operation.getProductId(), operation.getQuantity());
+                        }
+                    }
+                    case REMOVE -> lines.remove(operation.getProductId());
+                }
+            }
+            return read(sessionId);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pruebatecnica.orderservice.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Order and OrderItem ids come from pooled blocks in id_generators. Rows created before the switch got
+// their ids from AUTO_INCREMENT, so at startup each generator is moved past the highest existing id
+// (never backwards). Runs before the web server accepts requests; depending on the EntityManagerFactory
+// makes sure ddl-auto has created id_generators first.
+@Component
+@Slf4j
+public class IdGeneratorSeeder {
+    
+    // Must match allocationSize on the @TableGenerator mappings
+    private static final int ALLOCATION_SIZE = 50;
+    
+    private static final String SEED_SQL = """
+            INSERT INTO id_generators (sequence_name, next_val)
+            SELECT ?, COALESCE(MAX(id), 0) + ? FROM %s
+            ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val))
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public IdGeneratorSeeder(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @PostConstruct
+    public void seed() {
+        seed("orders");
+        seed("order_items");
+    }
+    
+    private void seed(String table) {
+        // The pooled optimizer hands out the block ending at the value it reads, so stay a full block ahead
+        jdbcTemplate.update(SEED_SQL.formatted(table), table, ALLOCATION_SIZE + 1);
+        Long nextVal = jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generators WHERE sequence_name = ?", Long.class, table);
+        log.info("Id generator for {} starts at {}", table, nextVal);
+    }
+}
@@ -34,6 +34,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/orders/health").permitAll()          // Health check
                         .requestMatchers("/error").permitAll()                     // Error handling
                         .requestMatchers("/actuator/**").permitAll()               // Actuator endpoints
+                        .requestMatchers("/internal/**").permitAll()               // Service calls, checked against X-Internal-Token
                         
                         // All order endpoints require authentication
                         .requestMatchers("/api/orders/**").authenticated()         // All order operations require JWT
@@ -0,0 +1,153 @@
+package com.pruebatecnica.orderservice.controller;
+
+import com.pruebatecnica.orderservice.dto.ApiResponse;
+import com.pruebatecnica.orderservice.dto.CreateOrderRequest;
+import com.pruebatecnica.orderservice.dto.OrderDto;
+import com.pruebatecnica.orderservice.service.OrderService;
+import com.pruebatecnica.serviceclient.InternalToken;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// Service-to-service endpoints. They live outside /api/** so the gateway does not route them, and
+// every call must carry the shared X-Internal-Token.
+@RestController
+@RequestMapping("/internal/orders")
+@RequiredArgsConstructor
+@Slf4j
+public class InternalOrderController {
+
+    private final OrderService orderService;
+
+    private final InternalToken internalToken;
+
+    // Cart checkout: the lines were revalidated by cart-service right before this call
+    @PostMapping("/checkout")
+    public ResponseEntity<ApiResponse<OrderDto>> createCheckoutOrder(
+            @RequestHeader(value = InternalToken.HEADER, required = false) String token,
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestHeader(value = "X-User-Email", required = false) String userEmail,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody CreateOrderRequest request) {
+
+        if (!internalToken.matches(token)) {
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.FORBIDDEN.value())
+                    .appCode("INVALID_INTERNAL_TOKEN")
+                    .message("Acceso no autorizado")
+                    .build();
+
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+
+        try {
+            log.info("Creating checkout order for user: {} with {} items (key {})", userId, request.getItems().size(), idempotencyKey);
+
+            OrderDto order;
+            try {
+                order = orderService.createCheckoutOrder(request, userId, userEmail, idempotencyKey);
+            } catch (DataIntegrityViolationException e) {
+                // Two concurrent requests with the same key: the loser returns the winner's order
+                order = idempotencyKey != null ? orderService.findOrderByIdempotencyKey(idempotencyKey, userId) : null;
+                if (order == null) {
+                    throw e;
+                }
+            }
+
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.CREATED.value())
+                    .appCode("ORDER_CREATED")
+                    .message("Orden creada exitosamente")
+                    .data(order)
+                    .build();
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Error creating checkout order: {}", e.getMessage());
+
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("ORDER_CREATE_ERROR")
+                    .message(e.getMessage())
+                    .build();
+
+            return ResponseEntity.badRequest().body(response);
+
+        } catch (Exception e) {
+            log.error("Unexpected error creating checkout order: {}", e.getMessage());
+
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("ORDER_CREATE_ERROR")
+                    .message("Error al crear la orden")
+                    .build();
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    // Lets cart-service settle a checkout whose create call failed without an answer: it asks well after
+    // that call timed out, so an order that is not here by then was never created
+    @GetMapping("/checkout/{idempotencyKey}")
+    public ResponseEntity<ApiResponse<OrderDto>> getCheckoutOrder(
+            @RequestHeader(value = InternalToken.HEADER, required = false) String token,
+            @RequestHeader("X-User-Id") Long userId,
+            @PathVariable String idempotencyKey) {
+        
+        if (!internalToken.matches(token)) {
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.FORBIDDEN.value())
+                    .appCode("INVALID_INTERNAL_TOKEN")
+                    .message("Acceso no autorizado")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        
+        try {
+            OrderDto order = orderService.findOrderByIdempotencyKey(idempotencyKey, userId);
+            if (order == null) {
+                ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                        .success(false)
+                        .httpStatus(HttpStatus.NOT_FOUND.value())
+                        .appCode("ORDER_NOT_FOUND")
+                        .message("Orden no encontrada")
+                        .build();
+                
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+            
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("ORDER_FOUND")
+                    .message("Orden encontrada")
+                    .data(order)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Error fetching checkout order {}: {}", idempotencyKey, e.getMessage());
+            
+            ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("ORDER_FETCH_ERROR")
+                    .message("Error al obtener la orden")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
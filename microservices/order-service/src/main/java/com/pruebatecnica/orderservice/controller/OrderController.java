@@ -3,10 +3,12 @@ package com.pruebatecnica.orderservice.controller;
 import com.pruebatecnica.orderservice.dto.*;
 import com.pruebatecnica.orderservice.entity.Order;
 import com.pruebatecnica.orderservice.service.OrderService;
+import com.pruebatecnica.serviceclient.ProductServiceUnavailableException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -146,6 +148,7 @@ public class OrderController {
     @PostMapping
     public ResponseEntity<ApiResponse<OrderDto>> createOrder(
             @Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletRequest httpRequest) {
 //        log para ver el body del request
         log.info("CreateOrderRequest: {}", request);
@@ -163,7 +166,16 @@ public class OrderController {
             
             log.info("Creating order for user: {} with {} items", userId, request.getItems().size());
             
-            OrderDto order = orderService.createOrder(request, userId, userEmail);
+            OrderDto order;
+            try {
+                order = orderService.createOrder(request, userId, userEmail, idempotencyKey);
+            } catch (DataIntegrityViolationException e) {
+                // Two concurrent requests with the same key: the loser returns the winner's order
+                order = idempotencyKey != null ? orderService.findOrderByIdempotencyKey(idempotencyKey, userId) : null;
+                if (order == null) {
+                    throw e;
+                }
+            }
             
             ApiResponse<OrderDto> response = ApiResponse.<OrderDto>builder()
                     .success(true)
@@ -187,6 +199,9 @@ public class OrderController {
             
             return ResponseEntity.badRequest().body(response);
             
+        } catch (ProductServiceUnavailableException e) {
+            return productServiceUnavailable("creating order", e);
+            
         } catch (Exception e) {
             log.error("Unexpected error creating order: {}", e.getMessage());
             
@@ -343,4 +358,18 @@ public class OrderController {
         
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
     }
-}
\ No newline at end of file
+    
+    // Circuit open, bulkhead full or product-service down: answer right away instead of queueing behind it
+    private <T> ResponseEntity<ApiResponse<T>> productServiceUnavailable(String operation, ProductServiceUnavailableException e) {
+        log.warn("Product service unavailable {}: {}", operation, e.getMessage());
+        
+        ApiResponse<T> response = ApiResponse.<T>builder()
+                .success(false)
+                .httpStatus(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .appCode("PRODUCT_SERVICE_UNAVAILABLE")
+                .message(e.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+}
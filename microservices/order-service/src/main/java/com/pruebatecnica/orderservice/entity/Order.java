@@ -17,7 +17,8 @@ import java.util.List;
     @Index(name = "idx_orders_user_id", columnList = "userId"),
     @Index(name = "idx_orders_order_number", columnList = "orderNumber", unique = true),
     @Index(name = "idx_orders_status_created", columnList = "status, createdAt"),
-    @Index(name = "idx_orders_user_status", columnList = "userId, status")
+    @Index(name = "idx_orders_user_status", columnList = "userId, status"),
+    @Index(name = "idx_orders_idempotency_key", columnList = "idempotencyKey", unique = true)
 })
 @Data
 @NoArgsConstructor
@@ -25,8 +26,12 @@ import java.util.List;
 @Builder
 public class Order {
     
+    // Pooled ids (blocks of 50 from id_generators) instead of IDENTITY, so Hibernate can batch inserts;
+    // IdGeneratorSeeder moves the block above the ids AUTO_INCREMENT already handed out
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
     
     @Column(name = "order_number", length = 20, unique = true, nullable = false)
@@ -78,6 +83,10 @@ public class Order {
     @Column(name = "payment_reference", length = 100)
     private String paymentReference;
     
+    // Client-supplied key (e.g. cart checkout); a repeated request returns the order it already created
+    @Column(name = "idempotency_key", length = 100, unique = true)
+    private String idempotencyKey;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -21,8 +21,11 @@ import java.time.LocalDateTime;
 @Builder
 public class OrderItem {
     
+    // Pooled like Order.id so the lines of an order go out as one batched INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_items_id")
+    @TableGenerator(name = "order_items_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
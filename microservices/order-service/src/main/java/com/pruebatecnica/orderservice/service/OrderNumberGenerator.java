@@ -0,0 +1,69 @@
+package com.pruebatecnica.orderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Snowflake-style order numbers: 41 bits of millis since 2024-01-01, a 10-bit node id and a 12-bit
+// sequence, rendered as fixed-width base36 after the prefix (e.g. ORD0B3Q8ZK1S0W2P). Unique across threads
+// without locks and across nodes because every instance must be given its own node id, so no DB round
+// trip is needed; fixed width keeps string order equal to creation order.
+@Component
+@Slf4j
+public class OrderNumberGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    // Long.MAX_VALUE in base36
+    private static final int WIDTH = 13;
+
+    private final String prefix;
+    private final long nodeId;
+
+    // millis since epoch << 12 | sequence of the last issued number
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+    public OrderNumberGenerator(@Value("${order.number.prefix:ORD}") String prefix,
+                                @Value("${order.number.node-id:-1}") long nodeId) {
+        // A derived id (host, pid) can repeat across instances and a repeat means duplicate order numbers,
+        // so the node id is only ever taken from configuration
+        if (nodeId < 0) {
+            throw new IllegalStateException("order.number.node-id is not set: give every order-service instance "
+                    + "its own id in 0-" + MAX_NODE_ID + " (ORDER_NODE_ID)");
+        }
+        this.prefix = prefix;
+        this.nodeId = nodeId & MAX_NODE_ID;
+        if (nodeId > MAX_NODE_ID) {
+            log.warn("order.number.node-id {} exceeds {}, using {}", nodeId, MAX_NODE_ID, this.nodeId);
+        }
+        log.info("Order numbers use node id {}", this.nodeId);
+    }
+
+    public String generate() {
+        long timestampAndSequence = nextTimestampAndSequence();
+        long millis = timestampAndSequence >>> SEQUENCE_BITS;
+        long sequence = timestampAndSequence & ((1L << SEQUENCE_BITS) - 1);
+
+        long id = (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+        String encoded = Long.toString(id, 36).toUpperCase();
+        return prefix + "0".repeat(WIDTH - encoded.length()) + encoded;
+    }
+
+    // Same millisecond: bump the sequence; when it overflows it carries into the timestamp, which stays
+    // monotonic even if the wall clock steps back
+    private long nextTimestampAndSequence() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTimestampAndSequence.get();
+            long next = Math.max(now, last + 1);
+            if (lastTimestampAndSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
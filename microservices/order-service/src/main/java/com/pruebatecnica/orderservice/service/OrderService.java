@@ -5,9 +5,9 @@ import com.pruebatecnica.orderservice.entity.Order;
 import com.pruebatecnica.orderservice.entity.OrderItem;
 import com.pruebatecnica.orderservice.repository.OrderRepository;
 import com.pruebatecnica.orderservice.repository.OrderItemRepository;
+import com.pruebatecnica.serviceclient.ProductInfo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,7 +15,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,12 +29,7 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final ProductService productService;
-    
-    @Value("${order.number.prefix:ORD}")
-    private String orderNumberPrefix;
-    
-    @Value("${order.number.length:8}")
-    private int orderNumberLength;
+    private final OrderNumberGenerator orderNumberGenerator;
     
     @Transactional(readOnly = true)
     public List<OrderDto> getUserOrders(Long userId) {
@@ -41,9 +38,7 @@ public class OrderService {
         List<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
         log.info("Found {} orders for user ID: {}", orders.size(), userId);
         
-        return orders.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(orders);
     }
     
     @Transactional(readOnly = true)
@@ -53,7 +48,8 @@ public class OrderService {
         Page<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
         log.info("Found {} orders for user ID: {} on page {}", orders.getContent().size(), userId, pageable.getPageNumber());
         
-        return orders.map(this::convertToDto);
+        Map<Long, List<OrderItem>> itemsByOrder = loadItems(orders.getContent());
+        return orders.map(order -> convertToDto(order, itemsByOrder.getOrDefault(order.getId(), List.of())));
     }
     
     @Transactional(readOnly = true)
@@ -63,9 +59,7 @@ public class OrderService {
         List<Order> orders = orderRepository.findByUserIdAndStatusOrderByCreatedAtDesc(userId, status);
         log.info("Found {} orders with status {} for user ID: {}", orders.size(), status, userId);
         
-        return orders.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(orders);
     }
     
     @Transactional(readOnly = true)
@@ -103,14 +97,55 @@ public class OrderService {
         return convertToDto(order);
     }
     
-    public OrderDto createOrder(CreateOrderRequest request, Long userId, String userEmail) {
+    @Transactional(readOnly = true)
+    public OrderDto findOrderByIdempotencyKey(String idempotencyKey, Long userId) {
+        return orderRepository.findByIdempotencyKeyAndUserIdWithItems(idempotencyKey, userId)
+                .map(this::convertToDto)
+                .orElse(null);
+    }
+    
+    public OrderDto createOrder(CreateOrderRequest request, Long userId, String userEmail, String idempotencyKey) {
         log.info("Creating order for user ID: {} with {} items", userId, request.getItems().size());
         
+        Optional<Order> existing = findExisting(idempotencyKey, userId);
+        if (existing.isPresent()) {
+            return convertToDto(existing.get());
+        }
+        
         // Validate and fetch product information for each item
-        List<OrderItem> orderItems = validateAndPrepareOrderItems(request.getItems());
+        return saveOrder(request, validateAndPrepareOrderItems(request.getItems()), userId, userEmail, idempotencyKey);
+    }
+    
+    // Cart checkout (internal call): cart-service has just revalidated every line against product-service,
+    // so the lines are taken as sent instead of looking the same products up a second time
+    public OrderDto createCheckoutOrder(CreateOrderRequest request, Long userId, String userEmail, String idempotencyKey) {
+        log.info("Creating checkout order for user ID: {} with {} revalidated items", userId, request.getItems().size());
+        
+        Optional<Order> existing = findExisting(idempotencyKey, userId);
+        if (existing.isPresent()) {
+            return convertToDto(existing.get());
+        }
         
+        List<OrderItem> orderItems = request.getItems().stream()
+                .map(this::prepareRevalidatedOrderItem)
+                .collect(Collectors.toList());
+        return saveOrder(request, orderItems, userId, userEmail, idempotencyKey);
+    }
+    
+    // A retried request (same key) gets the order created the first time instead of a duplicate
+    private Optional<Order> findExisting(String idempotencyKey, Long userId) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        Optional<Order> existing = orderRepository.findByIdempotencyKeyAndUserIdWithItems(idempotencyKey, userId);
+        existing.ifPresent(order -> log.info("Order {} already exists for idempotency key {}", order.getOrderNumber(), idempotencyKey));
+        return existing;
+    }
+    
+    private OrderDto saveOrder(CreateOrderRequest request, List<OrderItem> orderItems, Long userId, String userEmail,
+                               String idempotencyKey) {
         // Generate unique order number
-        String orderNumber = generateOrderNumber();
+        String orderNumber = orderNumberGenerator.generate();
         
         // Create the order
         Order order = Order.builder()
@@ -124,23 +159,15 @@ public class OrderService {
                 .billingAddress(request.getBillingAddress())
                 .paymentMethod(request.getPaymentMethod())
                 .paymentReference(request.getPaymentReference())
+                .idempotencyKey(idempotencyKey)
                 .build();
         
-        // Save the order first to get the ID
-        order = orderRepository.save(order);
-        log.info("Created order with ID: {} and number: {}", order.getId(), order.getOrderNumber());
-        
-        // Set the order reference for each item and save them
-        final Order savedOrder = order;
-        orderItems.forEach(item -> {
-            item.setOrder(savedOrder);
-        });
-        orderItemRepository.saveAll(orderItems);
-        
-        // Update order totals
+        // Items cascade from the order and totals are known up front: with pooled ids this flushes as one
+        // order INSERT plus one batched INSERT for all the lines
+        orderItems.forEach(item -> item.setOrder(order));
         order.setItems(orderItems);
         order.calculateTotals();
-        order = orderRepository.save(order);
+        orderRepository.saveAndFlush(order);
         
         log.info("Order {} created successfully with {} items, total: {} {}", 
                 order.getOrderNumber(), order.getTotalItems(), order.getTotalInCurrency(), order.getCurrency());
@@ -211,25 +238,40 @@ public class OrderService {
         List<Order> orders = orderRepository.searchOrdersByUserId(userId, searchTerm);
         log.info("Found {} orders matching search term: {}", orders.size(), searchTerm);
         
-        return orders.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(orders);
     }
     
     private List<OrderItem> validateAndPrepareOrderItems(List<OrderItemRequest> itemRequests) {
+        // One product-service call for the whole order instead of one per line
+        Set<Long> productIds = itemRequests.stream()
+                .map(OrderItemRequest::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, ProductInfo> products = productService.getProductsInfo(productIds);
+        
         return itemRequests.stream()
-                .map(this::validateAndPrepareOrderItem)
+                .map(itemRequest -> validateAndPrepareOrderItem(itemRequest, products.get(itemRequest.getProductId())))
                 .collect(Collectors.toList());
     }
     
-    private OrderItem validateAndPrepareOrderItem(OrderItemRequest itemRequest) {
-        // Get product information from product service
-        ProductService.ProductInfo productInfo = productService.getProductInfo(itemRequest.getProductId());
-        if (productInfo == null) {
-            throw new IllegalArgumentException("Producto no encontrado con ID: " + itemRequest.getProductId());
+    private OrderItem prepareRevalidatedOrderItem(OrderItemRequest itemRequest) {
+        if (itemRequest.getPrice() == null || itemRequest.getPrice() <= 0 || itemRequest.getProductName() == null) {
+            throw new IllegalArgumentException("Datos incompletos para el producto con ID " + itemRequest.getProductId());
         }
         
-        if (!productInfo.getIsActive()) {
+        return OrderItem.builder()
+                .productId(itemRequest.getProductId())
+                .productName(itemRequest.getProductName())
+                .productDescription(itemRequest.getProductDescription())
+                .productImageUrl(itemRequest.getProductImageUrl())
+                .quantity(itemRequest.getQuantity())
+                .priceCents((int) Math.round(itemRequest.getPrice() * 100))
+                .currency(itemRequest.getCurrency() != null ? itemRequest.getCurrency() : "GTQ")
+                .build();
+    }
+    
+    private OrderItem validateAndPrepareOrderItem(OrderItemRequest itemRequest, ProductInfo productInfo) {
+        // The batch lookup only returns active products
+        if (productInfo == null || !Boolean.TRUE.equals(productInfo.getIsActive())) {
             throw new IllegalArgumentException("El producto con ID " + itemRequest.getProductId() + " no está disponible");
         }
         
@@ -287,16 +329,29 @@ public class OrderService {
         }
     }
     
-    private String generateOrderNumber() {
-        // Generate a unique order number with format: ORD12345
-        long timestamp = System.currentTimeMillis();
-        String number = String.valueOf(timestamp % 1000000); // Last 6 digits of timestamp
-        return orderNumberPrefix + String.format("%0" + (orderNumberLength - orderNumberPrefix.length()) + "d", 
-                Long.parseLong(number));
+    // Lists load the lines of all their orders with one IN query instead of initializing each lazy collection
+    private List<OrderDto> convertToDtos(List<Order> orders) {
+        Map<Long, List<OrderItem>> itemsByOrder = loadItems(orders);
+        return orders.stream()
+                .map(order -> convertToDto(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+    
+    private Map<Long, List<OrderItem>> loadItems(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        return orderItemRepository.findByOrderIdIn(orderIds).stream()
+                .collect(Collectors.groupingBy(item -> item.getOrder().getId()));
     }
     
     private OrderDto convertToDto(Order order) {
-        List<OrderItemDto> itemDtos = order.getItems().stream()
+        return convertToDto(order, order.getItems());
+    }
+    
+    private OrderDto convertToDto(Order order, List<OrderItem> items) {
+        List<OrderItemDto> itemDtos = items.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         
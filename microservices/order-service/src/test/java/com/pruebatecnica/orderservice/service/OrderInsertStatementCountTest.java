@@ -0,0 +1,88 @@
+package com.pruebatecnica.orderservice.service;
+
+import com.pruebatecnica.orderservice.dto.CreateOrderRequest;
+import com.pruebatecnica.orderservice.dto.OrderDto;
+import com.pruebatecnica.orderservice.dto.OrderItemRequest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Pooled table ids let Hibernate batch the order lines: however many lines an order has, creating it
+// costs one INSERT for the order and one batched INSERT for its lines
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({OrderService.class, OrderNumberGenerator.class})
+class OrderInsertStatementCountTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private ProductService productService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // Allocate the first id blocks up front so the counts below only cover the order itself
+        orderService.createCheckoutOrder(order(1), 99L, "warmup@example.com", null);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        SqlStatementRecorder.clear();
+    }
+
+    @Test
+    void orderWithFortyLinesIsInsertedWithTwoStatements() {
+        OrderDto order = orderService.createCheckoutOrder(order(40), 1L, "user@example.com", "key-40");
+
+        assertThat(order.getItems()).hasSize(40);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(41);
+        assertThat(SqlStatementRecorder.count("insert into orders")).isEqualTo(1);
+        assertThat(SqlStatementRecorder.count("insert into order_items")).isEqualTo(1);
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithTheNumberOfLines() {
+        orderService.createCheckoutOrder(order(2), 1L, "user@example.com", "key-2");
+        long smallOrder = SqlStatementRecorder.count("insert");
+
+        SqlStatementRecorder.clear();
+        orderService.createCheckoutOrder(order(45), 1L, "user@example.com", "key-45");
+
+        assertThat(SqlStatementRecorder.count("insert")).isEqualTo(smallOrder).isEqualTo(2);
+    }
+
+    private static CreateOrderRequest order(int lines) {
+        List<OrderItemRequest> items = LongStream.rangeClosed(1, lines)
+                .mapToObj(productId -> OrderItemRequest.builder()
+                        .productId(productId)
+                        .productName("Producto " + productId)
+                        .quantity(1)
+                        .price(10.0)
+                        .currency("GTQ")
+                        .build())
+                .toList();
+        return CreateOrderRequest.builder()
+                .items(items)
+                .shippingAddress("Ciudad de Guatemala")
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.pruebatecnica.orderservice.service;
+
+import com.pruebatecnica.orderservice.dto.CreateOrderRequest;
+import com.pruebatecnica.orderservice.dto.OrderDto;
+import com.pruebatecnica.orderservice.dto.OrderItemRequest;
+import com.pruebatecnica.orderservice.entity.Order;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Regression guard for the N+1 on order lists: the lines of every listed order are loaded with one
+// IN query, so the query count stays fixed however many orders the user has
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({OrderService.class, OrderNumberGenerator.class})
+class OrderListQueryCountTest {
+
+    private static final Long USER_ID = 7L;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @Test
+    void userOrdersTakeTwoQueriesWhateverTheOrderCount() {
+        createOrders(3);
+        assertThat(selectsFor(() -> orderService.getUserOrders(USER_ID))).isEqualTo(2);
+
+        createOrders(12);
+        List<OrderDto> orders = orderService.getUserOrders(USER_ID);
+        assertThat(orders).hasSize(15).allSatisfy(order -> assertThat(order.getItems()).hasSize(3));
+        assertThat(selectsFor(() -> orderService.getUserOrders(USER_ID))).isEqualTo(2);
+    }
+
+    @Test
+    void ordersByStatusTakeTwoQueries() {
+        createOrders(10);
+
+        assertThat(selectsFor(() -> orderService.getUserOrdersByStatus(USER_ID, Order.OrderStatus.PENDING))).isEqualTo(2);
+    }
+
+    @Test
+    void searchTakesTwoQueries() {
+        createOrders(10);
+
+        assertThat(selectsFor(() -> orderService.searchUserOrders(USER_ID, "ORD"))).isEqualTo(2);
+    }
+
+    @Test
+    void pageOfOrdersTakesThreeQueriesWhateverThePageSize() {
+        createOrders(20);
+
+        // Page, total count and the lines of the page
+        assertThat(selectsFor(() -> orderService.getUserOrdersPaginated(USER_ID, PageRequest.of(0, 5)))).isEqualTo(3);
+        assertThat(selectsFor(() -> orderService.getUserOrdersPaginated(USER_ID, PageRequest.of(0, 15)))).isEqualTo(3);
+
+        Page<OrderDto> page = orderService.getUserOrdersPaginated(USER_ID, PageRequest.of(1, 15));
+        assertThat(page.getContent()).hasSize(5).allSatisfy(order -> assertThat(order.getItems()).hasSize(3));
+    }
+
+    // Runs the call on an empty persistence context, as a fresh request would, and counts its SELECTs
+    private long selectsFor(Runnable call) {
+        entityManager.clear();
+        SqlStatementRecorder.clear();
+        call.run();
+        long selects = SqlStatementRecorder.count("select");
+        entityManager.clear();
+        return selects;
+    }
+
+    private void createOrders(int count) {
+        for (int i = 0; i < count; i++) {
+            orderService.createCheckoutOrder(order(), USER_ID, "user@example.com", null);
+        }
+        entityManager.flush();
+    }
+
+    private static CreateOrderRequest order() {
+        List<OrderItemRequest> items = LongStream.rangeClosed(1, 3)
+                .mapToObj(productId -> OrderItemRequest.builder()
+                        .productId(productId)
+                        .productName("Producto " + productId)
+                        .quantity(2)
+                        .price(10.0)
+                        .currency("GTQ")
+                        .build())
+                .toList();
+        return CreateOrderRequest.builder().items(items).build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.pruebatecnica.orderservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.pruebatecnica.orderservice.service.ConcurrencyTestSupport.THREADS;
+import static com.pruebatecnica.orderservice.service.ConcurrencyTestSupport.assertIncreasingInIssueOrder;
+import static com.pruebatecnica.orderservice.service.ConcurrencyTestSupport.generateConcurrently;
+import static com.pruebatecnica.orderservice.service.ConcurrencyTestSupport.idsPerSecond;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderNumberGeneratorTest {
+
+    @Test
+    void numbersArePrefixedFixedWidthBase36() {
+        String number = new OrderNumberGenerator("ORD", 7).generate();
+
+        assertThat(number).matches("ORD[0-9A-Z]{13}");
+        assertThat(nodeIdOf(number)).isEqualTo(7);
+    }
+
+    @Test
+    void outOfRangeNodeIdIsMaskedToTenBits() {
+        assertThat(nodeIdOf(new OrderNumberGenerator("ORD", 1025).generate())).isEqualTo(1);
+    }
+
+    @Test
+    void missingNodeIdFailsInsteadOfGuessingOne() {
+        assertThatThrownBy(() -> new OrderNumberGenerator("ORD", -1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("order.number.node-id");
+    }
+
+    @Test
+    void numbersIncreaseInIssueOrderPastTheSequenceLimit() {
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD", 1);
+
+        // Far more than 4096 per millisecond, so the sequence carries into the timestamp many times
+        assertIncreasingInIssueOrder(generator::generate, 100_000);
+    }
+
+    @Test
+    void issuesOverAMillionNumbersPerSecondOnOneThread() {
+        double rate = idsPerSecond(new OrderNumberGenerator("ORD", 1)::generate, 1_000_000);
+
+        System.out.printf("OrderNumberGenerator: %,.0f numbers/s%n", rate);
+        assertThat(rate).isGreaterThan(1_000_000);
+    }
+
+    @Test
+    void numbersAreUniqueAcrossThreads() throws Exception {
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD", 1);
+        int perThread = 50_000;
+
+        assertThat(generateConcurrently(generator::generate, perThread)).hasSize(THREADS * perThread);
+    }
+
+    @Test
+    void instancesWithDistinctNodeIdsNeverCollide() {
+        // Two instances issuing in the same milliseconds with the same sequences
+        OrderNumberGenerator first = new OrderNumberGenerator("ORD", 1);
+        OrderNumberGenerator second = new OrderNumberGenerator("ORD", 2);
+        Set<String> numbers = new HashSet<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(numbers.add(first.generate())).isTrue();
+            assertThat(numbers.add(second.generate())).isTrue();
+        }
+    }
+
+    private static long nodeIdOf(String number) {
+        long id = Long.parseLong(number.substring("ORD".length()), 36);
+        return (id >>> 12) & 1023;
+    }
+}
@@ -1,7 +1,10 @@
 package com.pruebatecnica.productservice.controller;
 
 import com.pruebatecnica.productservice.dto.ApiResponse;
+import com.pruebatecnica.productservice.dto.ProductPage;
+import com.pruebatecnica.productservice.dto.ProductSort;
 import com.pruebatecnica.productservice.entity.Product;
+import com.pruebatecnica.productservice.service.ProductArchiveService;
 import com.pruebatecnica.productservice.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,23 +22,29 @@ import java.util.Optional;
 public class ProductController {
     
     private final ProductService productService;
+    private final ProductArchiveService productArchiveService;
 
     @GetMapping
     public ResponseEntity<ApiResponse<List<Product>>> getAllProducts(
             @RequestParam(required = false) String search,
             @RequestParam(required = false) Double minPrice,
-            @RequestParam(required = false) Double maxPrice) {
-        log.info("Getting products with filters - search: {}, minPrice: {}, maxPrice: {}", search, minPrice, maxPrice);
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        log.info("Getting products with filters - search: {}, minPrice: {}, maxPrice: {}, sort: {}, after: {}, size: {}",
+                search, minPrice, maxPrice, sort, after, size);
         
         try {
-            List<Product> products;
+            ProductPage page;
             
             if (search != null && !search.trim().isEmpty()) {
-                products = productService.searchProducts(search);
+                page = productService.searchProducts(search, ProductSort.fromParam(sort, ProductSort.NEWEST), after, size);
             } else if (minPrice != null || maxPrice != null) {
-                products = productService.getProductsByPriceRange(minPrice, maxPrice);
+                page = productService.getProductsByPriceRange(minPrice, maxPrice,
+                        ProductSort.fromParam(sort, ProductSort.PRICE_ASC), after, size);
             } else {
-                products = productService.getAllActiveProducts();
+                page = productService.getAllActiveProducts(ProductSort.fromParam(sort, ProductSort.NEWEST), after, size);
             }
             
             ApiResponse<List<Product>> response = ApiResponse.<List<Product>>builder()
@@ -43,11 +52,25 @@ public class ProductController {
                     .httpStatus(HttpStatus.OK.value())
                     .appCode("PRODUCTS_FETCHED")
                     .message("Productos obtenidos exitosamente")
-                    .data(products)
+                    .data(page.products())
                     .build();
+            // Pass back as ?after= (with the same sort) to read the next page
+            response.getMeta().setNextCursor(page.nextCursor());
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid product listing request: {}", e.getMessage());
+            
+            ApiResponse<List<Product>> response = ApiResponse.<List<Product>>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("PRODUCTS_INVALID_REQUEST")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
         } catch (Exception e) {
             log.error("Error fetching products: {}", e.getMessage());
             
@@ -62,6 +85,50 @@ public class ProductController {
         }
     }
     
+    // Batch lookup for internal callers (cart/order services): one request instead of one per product
+    @GetMapping("/batch")
+    public ResponseEntity<ApiResponse<List<Product>>> getProductsByIds(@RequestParam List<Long> ids) {
+        log.info("Getting {} products by ID", ids.size());
+        
+        try {
+            List<Product> products = productService.getActiveProductsByIds(ids);
+            
+            ApiResponse<List<Product>> response = ApiResponse.<List<Product>>builder()
+                    .success(true)
+                    .httpStatus(HttpStatus.OK.value())
+                    .appCode("PRODUCTS_FETCHED")
+                    .message("Productos obtenidos exitosamente")
+                    .data(products)
+                    .build();
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid product batch request: {}", e.getMessage());
+            
+            ApiResponse<List<Product>> response = ApiResponse.<List<Product>>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.BAD_REQUEST.value())
+                    .appCode("PRODUCTS_INVALID_REQUEST")
+                    .message(e.getMessage())
+                    .build();
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("Error fetching products by ID: {}", e.getMessage());
+            
+            ApiResponse<List<Product>> response = ApiResponse.<List<Product>>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("PRODUCTS_FETCH_ERROR")
+                    .message("Error al obtener los productos")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<Product>> getProductById(@PathVariable Long id) {
         log.info("Getting product with ID: {}", id);
@@ -104,6 +171,49 @@ public class ProductController {
         }
     }
 
+    // Historical lookup: also resolves inactive and archived products (e.g. for past orders)
+    @GetMapping("/{id}/history")
+    public ResponseEntity<ApiResponse<Product>> getProductHistory(@PathVariable Long id) {
+        log.info("Getting historical product with ID: {}", id);
+        
+        try {
+            Optional<Product> product = productArchiveService.getProductIncludingArchived(id);
+            
+            if (product.isPresent()) {
+                ApiResponse<Product> response = ApiResponse.<Product>builder()
+                        .success(true)
+                        .httpStatus(HttpStatus.OK.value())
+                        .appCode("PRODUCT_FOUND")
+                        .message("Producto encontrado")
+                        .data(product.get())
+                        .build();
+                
+                return ResponseEntity.ok(response);
+            }
+            
+            ApiResponse<Product> response = ApiResponse.<Product>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.NOT_FOUND.value())
+                    .appCode("PRODUCT_NOT_FOUND")
+                    .message("Producto no encontrado")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            
+        } catch (Exception e) {
+            log.error("Error fetching historical product with ID {}: {}", id, e.getMessage());
+            
+            ApiResponse<Product> response = ApiResponse.<Product>builder()
+                    .success(false)
+                    .httpStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                    .appCode("PRODUCT_FETCH_ERROR")
+                    .message("Error al obtener el producto")
+                    .build();
+            
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     @GetMapping("/health")
     public ResponseEntity<ApiResponse<String>> health() {
         ApiResponse<String> response = ApiResponse.<String>builder()
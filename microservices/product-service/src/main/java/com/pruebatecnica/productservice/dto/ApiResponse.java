@@ -1,5 +1,6 @@
 package com.pruebatecnica.productservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -77,5 +78,7 @@ public class ApiResponse<T> {
         private String service;
         private String version;
         private long durationMs;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String nextCursor;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.pruebatecnica.productservice.dto;
+
+import com.pruebatecnica.productservice.entity.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset cursor for GET /api/products: the sort it was issued for plus the sort key and id of
+// the last product returned. The next page is read with WHERE (sort key, id) > (key, id), so its cost
+// does not grow with how deep the client has paged.
+public record ProductCursor(ProductSort sort, Object key, long id) {
+
+    public static ProductCursor after(ProductSort sort, Product last) {
+        return new ProductCursor(sort, sort.keyOf(last), last.getId());
+    }
+
+    public String encode() {
+        String raw = sort.name() + ":" + id + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A cursor only makes sense for the ordering it was issued with
+    public static ProductCursor decode(String value, ProductSort sort) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(value.trim()), StandardCharsets.UTF_8).split(":", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+
+        try {
+            return new ProductCursor(sort, sort.parseKey(parts[2]), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.pruebatecnica.productservice.dto;
+
+import com.pruebatecnica.productservice.entity.Product;
+
+import java.util.List;
+
+// One page of the product listing; nextCursor is null on the last page
+public record ProductPage(List<Product> products, String nextCursor) {
+}
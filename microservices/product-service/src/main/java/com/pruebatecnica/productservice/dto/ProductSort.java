@@ -0,0 +1,72 @@
+package com.pruebatecnica.productservice.dto;
+
+import com.pruebatecnica.productservice.entity.Product;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// Each ordering matches a composite index on products (see Product @Table indexes),
+// so MySQL can walk the index and stop after the requested page. The sort key plus id
+// is also the keyset cursor (see ProductCursor): the next page starts right after it.
+public enum ProductSort {
+    PRICE_ASC("priceCents", false),
+    PRICE_DESC("priceCents", true),
+    NAME("name", false),
+    NEWEST("createdAt", true);
+
+    private final String property;
+    private final boolean descending;
+    private final Sort sort;
+
+    ProductSort(String property, boolean descending) {
+        this.property = property;
+        this.descending = descending;
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        this.sort = Sort.by(new Sort.Order(direction, property), new Sort.Order(direction, "id"));
+    }
+
+    public Sort toSort() {
+        return sort;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Object keyOf(Product product) {
+        return switch (this) {
+            case PRICE_ASC, PRICE_DESC -> product.getPriceCents();
+            case NAME -> product.getName();
+            case NEWEST -> product.getCreatedAt();
+        };
+    }
+
+    public Object parseKey(String value) {
+        try {
+            return switch (this) {
+                case PRICE_ASC, PRICE_DESC -> Integer.valueOf(value);
+                case NAME -> value;
+                case NEWEST -> LocalDateTime.parse(value);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+
+    public static ProductSort fromParam(String value, ProductSort defaultSort) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultSort;
+        }
+
+        try {
+            return ProductSort.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ordenamiento inválido: " + value);
+        }
+    }
+}
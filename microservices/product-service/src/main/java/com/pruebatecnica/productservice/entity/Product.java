@@ -11,8 +11,11 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
+// id closes each index so the keyset predicate (sort key, id) > (?, ?) is a single range scan
 @Table(name = "products", indexes = {
-    @Index(name = "idx_products_active_created", columnList = "isActive, createdAt")
+    @Index(name = "idx_products_active_created", columnList = "isActive, createdAt, id"),
+    @Index(name = "idx_products_active_price", columnList = "isActive, priceCents, id"),
+    @Index(name = "idx_products_active_name", columnList = "isActive, name, id")
 })
 @Data
 @NoArgsConstructor
@@ -0,0 +1,66 @@
+package com.pruebatecnica.productservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+// Cold storage for products that stayed inactive past product.archive.inactive-days.
+// Rows keep their original id so historical references (orders, carts) still resolve.
+@Entity
+@Table(name = "products_archive", indexes = {
+    @Index(name = "idx_products_archive_archived", columnList = "archivedAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductArchive {
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "name", length = 150, nullable = false)
+    private String name;
+    
+    @Column(name = "description", columnDefinition = "TEXT", nullable = false)
+    private String description;
+    
+    @Column(name = "image_url", length = 500, nullable = false)
+    private String imageUrl;
+    
+    @Column(name = "price_cents", nullable = false)
+    private Integer priceCents;
+    
+    @Column(name = "currency", length = 3, nullable = false, columnDefinition = "CHAR(3) DEFAULT 'GTQ'")
+    private String currency;
+    
+    @Column(name = "is_active", nullable = false, columnDefinition = "TINYINT(1) DEFAULT 0")
+    private Boolean isActive;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+    
+    public Product toProduct() {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .imageUrl(imageUrl)
+                .priceCents(priceCents)
+                .currency(currency)
+                .isActive(false)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.pruebatecnica.productservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+// Outbox of price changes not yet pushed to cart-service. Written in the same transaction as the
+// product update, one row per product (latest price wins), and deleted once every cart-service
+// instance has accepted it, so pending changes survive a restart.
+@Entity
+@Table(name = "product_price_changes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPriceChange {
+    
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+    
+    @Column(name = "price_cents", nullable = false)
+    private Integer priceCents;
+    
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
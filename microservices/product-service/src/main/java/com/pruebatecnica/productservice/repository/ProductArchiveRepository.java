@@ -0,0 +1,22 @@
+package com.pruebatecnica.productservice.repository;
+
+import com.pruebatecnica.productservice.entity.ProductArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductArchiveRepository extends JpaRepository<ProductArchive, Long> {
+    
+    // Set-based copy so a chunk is moved with one statement instead of one INSERT per product
+    @Modifying
+    @Query(value = "INSERT INTO products_archive " +
+                   "(id, name, description, image_url, price_cents, currency, is_active, created_at, updated_at, archived_at) " +
+                   "SELECT id, name, description, image_url, price_cents, currency, is_active, created_at, updated_at, CURRENT_TIMESTAMP " +
+                   "FROM products WHERE id IN (:ids) AND is_active = 0", nativeQuery = true)
+    int copyInactiveProducts(@Param("ids") List<Long> ids);
+}
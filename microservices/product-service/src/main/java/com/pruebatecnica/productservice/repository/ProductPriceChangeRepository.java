@@ -0,0 +1,31 @@
+package com.pruebatecnica.productservice.repository;
+
+import com.pruebatecnica.productservice.entity.ProductPriceChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductPriceChangeRepository extends JpaRepository<ProductPriceChange, Long> {
+    
+    // One row per product: a newer price replaces a pending one instead of queueing behind it
+    @Modifying
+    @Query(value = "INSERT INTO product_price_changes (product_id, price_cents, changed_at) " +
+                   "VALUES (:productId, :priceCents, CURRENT_TIMESTAMP) " +
+                   "ON DUPLICATE KEY UPDATE price_cents = VALUES(price_cents), changed_at = VALUES(changed_at)",
+           nativeQuery = true)
+    int record(@Param("productId") Long productId, @Param("priceCents") Integer priceCents);
+    
+    @Query("SELECT c FROM ProductPriceChange c ORDER BY c.productId")
+    List<ProductPriceChange> findPending(Pageable pageable);
+    
+    // Only the price that was sent: a newer one recorded meanwhile stays pending
+    @Modifying
+    @Query("DELETE FROM ProductPriceChange c WHERE c.productId = :productId AND c.priceCents = :priceCents")
+    int deleteSent(@Param("productId") Long productId, @Param("priceCents") Integer priceCents);
+}
@@ -1,22 +1,33 @@
 package com.pruebatecnica.productservice.repository;
 
 import com.pruebatecnica.productservice.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     
-    List<Product> findByIsActiveTrueOrderByCreatedAtDesc();
+    List<Product> findByIdInAndIsActiveTrue(Collection<Long> ids);
     
-    @Query("SELECT p FROM Product p WHERE p.isActive = true AND " +
-           "(LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-           "LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-           "ORDER BY p.createdAt DESC")
-    List<Product> findActiveProductsBySearchTerm(String searchTerm);
+    // Archival candidates, oldest id first so each run continues where the previous chunk stopped. Products
+    // still referenced by order or cart lines are skipped: fk_order_items_product and fk_cart_items_product are
+    // ON DELETE RESTRICT, and one such id would otherwise fail its whole chunk on every run
+    @Query(value = "SELECT p.id FROM products p WHERE p.is_active = 0 AND p.updated_at < :cutoff " +
+                   "AND NOT EXISTS (SELECT 1 FROM order_items oi WHERE oi.product_id = p.id) " +
+                   "AND NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.product_id = p.id) " +
+                   "ORDER BY p.id",
+           nativeQuery = true)
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
     
-    List<Product> findByIsActiveTrueAndPriceCentsBetweenOrderByPriceCentsAsc(Integer minPrice, Integer maxPrice);
-}
\ No newline at end of file
+    @Modifying
+    @Query("DELETE FROM Product p WHERE p.id IN :ids AND p.isActive = false")
+    int deleteInactiveByIds(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,15 @@
+package com.pruebatecnica.productservice.repository;
+
+import com.pruebatecnica.productservice.dto.ProductCursor;
+import com.pruebatecnica.productservice.dto.ProductSort;
+import com.pruebatecnica.productservice.entity.Product;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    // Active products in sort order, starting right after the cursor (or from the top when it is null).
+    // searchTerm and the price bounds are optional filters
+    List<Product> findActivePage(String searchTerm, Integer minPriceCents, Integer maxPriceCents,
+                                 ProductSort sort, ProductCursor after, int limit);
+}
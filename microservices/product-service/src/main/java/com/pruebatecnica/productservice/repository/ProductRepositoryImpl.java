@@ -0,0 +1,59 @@
+package com.pruebatecnica.productservice.repository;
+
+import com.pruebatecnica.productservice.dto.ProductCursor;
+import com.pruebatecnica.productservice.dto.ProductSort;
+import com.pruebatecnica.productservice.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Product> findActivePage(String searchTerm, Integer minPriceCents, Integer maxPriceCents,
+                                        ProductSort sort, ProductCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Product p WHERE p.isActive = true");
+        if (searchTerm != null) {
+            jpql.append(" AND (LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
+                .append(" OR LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')))");
+        }
+        if (minPriceCents != null) {
+            jpql.append(" AND p.priceCents >= :minPriceCents");
+        }
+        if (maxPriceCents != null) {
+            jpql.append(" AND p.priceCents <= :maxPriceCents");
+        }
+
+        String property = "p." + sort.getProperty();
+        String direction = sort.isDescending() ? "DESC" : "ASC";
+        if (after != null) {
+            // Row-value comparison over (sort key, id): the index range starts right after the cursor
+            jpql.append(" AND (").append(property).append(", p.id) ")
+                .append(sort.isDescending() ? "<" : ">")
+                .append(" (:afterKey, :afterId)");
+        }
+        jpql.append(" ORDER BY ").append(property).append(' ').append(direction)
+            .append(", p.id ").append(direction);
+
+        TypedQuery<Product> query = entityManager.createQuery(jpql.toString(), Product.class);
+        if (searchTerm != null) {
+            query.setParameter("searchTerm", searchTerm);
+        }
+        if (minPriceCents != null) {
+            query.setParameter("minPriceCents", minPriceCents);
+        }
+        if (maxPriceCents != null) {
+            query.setParameter("maxPriceCents", maxPriceCents);
+        }
+        if (after != null) {
+            query.setParameter("afterKey", after.key());
+            query.setParameter("afterId", after.id());
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,128 @@
+package com.pruebatecnica.productservice.service;
+
+import com.pruebatecnica.productservice.entity.ProductPriceChange;
+import com.pruebatecnica.productservice.repository.ProductPriceChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+// Pushes committed price changes to cart-service so open carts get repriced. Changes go through the
+// product_price_changes outbox, written with the product update, so nothing is lost on a restart.
+// They are coalesced per product (latest price wins) and sent in batches on a short interval to every
+// cart-service instance, so each one drops its cached copies. A batch leaves the outbox only after all
+// instances accepted it; repricing is idempotent, so a retry or a second product-service instance
+// sending the same batch is harmless.
+@Component
+@Slf4j
+public class CartPriceNotifier {
+    
+    private final DiscoveryClient discoveryClient;
+    private final ProductPriceChangeRepository priceChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RestTemplate restTemplate = new RestTemplate();
+    
+    private final boolean enabled;
+    
+    @Value("${product.price-sync.batch-size:500}")
+    private int batchSize;
+    
+    private final String internalToken;
+    
+    // The token only comes from the environment (INTERNAL_TOKEN); without it every notification would be
+    // rejected, so the service refuses to start rather than piling up the outbox
+    public CartPriceNotifier(DiscoveryClient discoveryClient,
+                             ProductPriceChangeRepository priceChangeRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${product.price-sync.enabled:true}") boolean enabled,
+                             @Value("${internal.token:}") String internalToken) {
+        if (enabled && (internalToken == null || internalToken.isBlank())) {
+            throw new IllegalStateException("internal.token is not set: export INTERNAL_TOKEN with the shared service secret");
+        }
+        this.discoveryClient = discoveryClient;
+        this.priceChangeRepository = priceChangeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.internalToken = internalToken;
+    }
+    
+    // Joins the caller's transaction: the change is recorded only if the product update commits
+    public void priceChanged(Long productId, Integer priceCents) {
+        if (!enabled || productId == null || priceCents == null) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> priceChangeRepository.record(productId, priceCents));
+    }
+    
+    @Scheduled(fixedDelayString = "${product.price-sync.flush-interval-ms:2000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        
+        List<ProductPriceChange> batch = priceChangeRepository.findPending(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        List<String> cartServiceUrls = getCartServiceUrls();
+        if (cartServiceUrls.isEmpty()) {
+            log.warn("Cart service unavailable, price changes kept for the next attempt");
+            return;
+        }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Internal-Token", internalToken);
+        
+        while (!batch.isEmpty()) {
+            List<Map<String, Object>> prices = batch.stream()
+                    .map(change -> Map.<String, Object>of("productId", change.getProductId(), "priceCents", change.getPriceCents()))
+                    .toList();
+            HttpEntity<Map<String, Object>> request = new HttpEntity<>(Map.of("prices", prices), headers);
+            
+            for (String cartServiceUrl : cartServiceUrls) {
+                try {
+                    restTemplate.postForEntity(cartServiceUrl + "/internal/carts/price-changes", request, Map.class);
+                } catch (RestClientException e) {
+                    log.warn("Error notifying cart service at {} of price changes, will retry: {}", cartServiceUrl, e.getMessage());
+                    return;
+                }
+            }
+            
+            List<ProductPriceChange> sent = batch;
+            transactionTemplate.executeWithoutResult(status ->
+                    sent.forEach(change -> priceChangeRepository.deleteSent(change.getProductId(), change.getPriceCents())));
+            log.info("Notified {} cart service instances of {} price changes", cartServiceUrls.size(), batch.size());
+            
+            batch = batch.size() < batchSize ? List.of() : priceChangeRepository.findPending(PageRequest.of(0, batchSize));
+        }
+    }
+    
+    private List<String> getCartServiceUrls() {
+        try {
+            List<ServiceInstance> instances = discoveryClient.getInstances("cart-service");
+            if (instances == null) {
+                return List.of();
+            }
+            return instances.stream().map(instance -> instance.getUri().toString()).toList();
+            
+        } catch (Exception e) {
+            log.error("Error getting cart service URL: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
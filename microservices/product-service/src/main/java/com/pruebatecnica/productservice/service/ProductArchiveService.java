@@ -0,0 +1,97 @@
+package com.pruebatecnica.productservice.service;
+
+import com.pruebatecnica.productservice.entity.Product;
+import com.pruebatecnica.productservice.entity.ProductArchive;
+import com.pruebatecnica.productservice.repository.ProductArchiveRepository;
+import com.pruebatecnica.productservice.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class ProductArchiveService {
+    
+    private final ProductRepository productRepository;
+    private final ProductArchiveRepository productArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${product.archive.enabled:false}")
+    private boolean archiveEnabled;
+    
+    @Value("${product.archive.inactive-days:90}")
+    private int inactiveDays;
+    
+    @Value("${product.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${product.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+    
+    public ProductArchiveService(ProductRepository productRepository,
+                                 ProductArchiveRepository productArchiveRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.productArchiveRepository = productArchiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    // Hot table first, archive second: lookups by id still resolve archived products
+    @Transactional(readOnly = true)
+    public Optional<Product> getProductIncludingArchived(Long id) {
+        log.info("Fetching product with ID {} including archived products", id);
+        Optional<Product> product = productRepository.findById(id);
+        if (product.isPresent()) {
+            return product;
+        }
+        return productArchiveRepository.findById(id).map(ProductArchive::toProduct);
+    }
+    
+    @Scheduled(cron = "${product.archive.schedule:0 30 3 * * *}")
+    public void archiveInactiveProducts() {
+        if (!archiveEnabled) {
+            return;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(inactiveDays);
+        log.info("Starting archival of products inactive since before {}", cutoff);
+        
+        int totalArchived = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer archived = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            if (archived == null || archived == 0) {
+                break;
+            }
+            totalArchived += archived;
+        }
+        
+        log.info("Archived {} inactive products", totalArchived);
+    }
+    
+    // One short transaction per chunk keeps row locks on the hot table brief
+    private int archiveChunk(LocalDateTime cutoff) {
+        List<Long> ids = productRepository.findArchivableIds(cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        
+        int copied = productArchiveRepository.copyInactiveProducts(ids);
+        int deleted = productRepository.deleteInactiveByIds(ids);
+        if (copied != deleted) {
+            // A product was reactivated mid-chunk; roll back and let the next run pick it up again
+            throw new IllegalStateException("Archival chunk mismatch: copied " + copied + ", deleted " + deleted);
+        }
+        
+        log.debug("Moved {} products to archive (ids {} - {})", deleted, ids.get(0), ids.get(ids.size() - 1));
+        return deleted;
+    }
+}
@@ -1,9 +1,13 @@
 package com.pruebatecnica.productservice.service;
 
+import com.pruebatecnica.productservice.dto.ProductCursor;
+import com.pruebatecnica.productservice.dto.ProductPage;
+import com.pruebatecnica.productservice.dto.ProductSort;
 import com.pruebatecnica.productservice.entity.Product;
 import com.pruebatecnica.productservice.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,13 +21,23 @@ import java.util.Optional;
 public class ProductService {
     
     private final ProductRepository productRepository;
+    private final CartPriceNotifier cartPriceNotifier;
+    
+    @Value("${product.listing.default-page-size:20}")
+    private int defaultPageSize;
+    
+    @Value("${product.listing.max-page-size:100}")
+    private int maxPageSize;
+    
+    @Value("${product.listing.max-batch-size:200}")
+    private int maxBatchSize;
     
     @Transactional(readOnly = true)
-    public List<Product> getAllActiveProducts() {
-        log.info("Fetching all active products from database");
-        List<Product> products = productRepository.findByIsActiveTrueOrderByCreatedAtDesc();
-        log.info("Found {} active products", products.size());
-        return products;
+    public ProductPage getAllActiveProducts(ProductSort sort, String after, Integer size) {
+        log.info("Fetching active products from database - sort: {}, after: {}, size: {}", sort, after, size);
+        ProductPage page = findPage(null, null, null, sort, after, size);
+        log.info("Found {} active products", page.products().size());
+        return page;
     }
     
     @Transactional(readOnly = true)
@@ -39,27 +53,43 @@ public class ProductService {
     }
     
     @Transactional(readOnly = true)
-    public List<Product> searchProducts(String searchTerm) {
+    public List<Product> getActiveProductsByIds(List<Long> ids) {
+        log.info("Fetching {} products by ID", ids.size());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        if (ids.size() > maxBatchSize) {
+            throw new IllegalArgumentException("No se pueden consultar más de " + maxBatchSize + " productos a la vez");
+        }
+        
+        List<Product> products = productRepository.findByIdInAndIsActiveTrue(ids);
+        log.info("Found {} active products out of {} requested", products.size(), ids.size());
+        return products;
+    }
+    
+    @Transactional(readOnly = true)
+    public ProductPage searchProducts(String searchTerm, ProductSort sort, String after, Integer size) {
         log.info("Searching products with term: {}", searchTerm);
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            return getAllActiveProducts();
+            return getAllActiveProducts(sort, after, size);
         }
         
-        List<Product> products = productRepository.findActiveProductsBySearchTerm(searchTerm.trim());
-        log.info("Found {} products matching search term: {}", products.size(), searchTerm);
-        return products;
+        ProductPage page = findPage(searchTerm.trim(), null, null, sort, after, size);
+        log.info("Found {} products matching search term: {}", page.products().size(), searchTerm);
+        return page;
     }
     
     @Transactional(readOnly = true)
-    public List<Product> getProductsByPriceRange(Double minPrice, Double maxPrice) {
+    public ProductPage getProductsByPriceRange(Double minPrice, Double maxPrice, ProductSort sort, String after, Integer size) {
         log.info("Fetching products with price range: {} - {}", minPrice, maxPrice);
         
-        Integer minPriceCents = minPrice != null ? (int) Math.round(minPrice * 100) : 0;
-        Integer maxPriceCents = maxPrice != null ? (int) Math.round(maxPrice * 100) : Integer.MAX_VALUE;
+        Integer minPriceCents = minPrice != null ? (int) Math.round(minPrice * 100) : null;
+        Integer maxPriceCents = maxPrice != null ? (int) Math.round(maxPrice * 100) : null;
         
-        List<Product> products = productRepository.findByIsActiveTrueAndPriceCentsBetweenOrderByPriceCentsAsc(minPriceCents, maxPriceCents);
-        log.info("Found {} products in price range", products.size());
-        return products;
+        ProductPage page = findPage(null, minPriceCents, maxPriceCents, sort, after, size);
+        log.info("Found {} products in price range", page.products().size());
+        return page;
     }
     
     public Product createProduct(Product product) {
@@ -87,6 +117,8 @@ public class ProductService {
         }
         
         Product existingProduct = existingProductOpt.get();
+        boolean priceChanged = productUpdate.getPriceCents() != null
+                && !productUpdate.getPriceCents().equals(existingProduct.getPriceCents());
         
         if (productUpdate.getName() != null) {
             existingProduct.setName(productUpdate.getName());
@@ -109,6 +141,11 @@ public class ProductService {
         
         Product savedProduct = productRepository.save(existingProduct);
         log.info("Product updated with ID: {}", savedProduct.getId());
+        
+        if (priceChanged) {
+            // Open carts are repriced by cart-service once this transaction commits
+            cartPriceNotifier.priceChanged(savedProduct.getId(), savedProduct.getPriceCents());
+        }
         return savedProduct;
     }
     
@@ -126,4 +163,22 @@ public class ProductService {
         
         log.info("Product with ID {} marked as inactive", id);
     }
-}
\ No newline at end of file
+    
+    // Keyset paging: each page is read from the sort index right after the previous page's last row,
+    // so deep pages cost the same as the first one. A full page means there may be more to read
+    private ProductPage findPage(String searchTerm, Integer minPriceCents, Integer maxPriceCents,
+                                 ProductSort sort, String after, Integer size) {
+        if (size != null && size <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor a 0");
+        }
+        
+        int limit = Math.min(size != null ? size : defaultPageSize, maxPageSize);
+        List<Product> products = productRepository.findActivePage(searchTerm, minPriceCents, maxPriceCents,
+                sort, ProductCursor.decode(after, sort), limit);
+        
+        String nextCursor = products.size() == limit
+                ? ProductCursor.after(sort, products.get(products.size() - 1)).encode()
+                : null;
+        return new ProductPage(products, nextCursor);
+    }
+}
@@ -0,0 +1,155 @@
+package com.pruebatecnica.serviceclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Single HTTP client for calls to other services, built on the JDK HttpClient so connections are kept
+// alive and reused (and multiplexed when HTTP/2 is enabled) instead of paying TCP/TLS setup per request.
+// Blocking callers use the RestTemplate exposed here; getAsync sends without tying up the caller's thread.
+// Both paths share the same connection pool and feed the in-flight and latency metrics.
+@Component
+@Slf4j
+public class InternalHttpClient {
+
+    private final HttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer syncTimer;
+    private final Timer asyncTimer;
+
+    public InternalHttpClient(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${client.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                              @Value("${client.http.read-timeout-ms:5000}") long readTimeoutMs,
+                              @Value("${client.http.http2:false}") boolean http2,
+                              @Value("${client.http.max-idle-connections:50}") int maxIdleConnections,
+                              @Value("${client.http.keep-alive-seconds:60}") int keepAliveSeconds) {
+        this.objectMapper = objectMapper;
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+
+        // The JDK client reads its pool settings from system properties when its pool is first created,
+        // and they apply to the whole JVM; explicit -D flags win over the configuration here. The pool size
+        // only bounds idle keep-alive connections: concurrent requests may still open more than that
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(maxIdleConnections));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+
+        // Over plain http, HTTP/2 is negotiated with an h2c upgrade on the first request to each host
+        this.httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        this.syncTimer = Timer.builder("internal.http.requests").tag("mode", "sync").register(meterRegistry);
+        this.asyncTimer = Timer.builder("internal.http.requests").tag("mode", "async").register(meterRegistry);
+        this.restTemplate.getInterceptors().add((request, body, execution) -> {
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                return execution.execute(request, body);
+            } finally {
+                inFlight.decrementAndGet();
+                syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+
+        Gauge.builder("internal.http.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+
+        log.info("Internal HTTP client using {} keeping up to {} idle connections",
+                http2 ? "HTTP/2" : "HTTP/1.1", maxIdleConnections);
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    // Completes exceptionally with the same RestClientException types RestTemplate throws, so callers
+    // (and ServiceInstanceSelector.Lease#recordFailure) can treat both paths alike
+    public <T> CompletableFuture<T> getAsync(String url, Class<T> responseType) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<T> result = exchange.handle((response, error) -> {
+            inFlight.decrementAndGet();
+            asyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                throw new CompletionException(toRestClientException(url, error));
+            }
+            return readBody(url, response, responseType);
+        });
+        // Cancelling the returned future aborts the exchange as well (hedged requests cancel the slower copy)
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private <T> T readBody(String url, HttpResponse<byte[]> response, Class<T> responseType) {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.statusCode());
+        if (status.is4xxClientError()) {
+            throw new HttpClientErrorException(status, "GET " + url);
+        }
+        if (status.isError()) {
+            throw new HttpServerErrorException(status, "GET " + url);
+        }
+        if (response.body().length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (IOException e) {
+            throw new RestClientException("Error reading response from " + url, e);
+        }
+    }
+
+    private RestClientException toRestClientException(String url, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IOException io) {
+            return new ResourceAccessException("I/O error on GET request for \"" + url + "\": " + io.getMessage(), io);
+        }
+        return new RestClientException("Error calling " + url, cause);
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.pruebatecnica.serviceclient;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Shared secret of the service-to-service calls (X-Internal-Token). The /internal/** endpoints are
+// permitAll and rely on it alone, so it only comes from the environment (INTERNAL_TOKEN) and the service
+// refuses to start without it instead of falling back to a known value.
+@Component
+public class InternalToken {
+
+    public static final String HEADER = "X-Internal-Token";
+
+    private final String value;
+
+    public InternalToken(@Value("${internal.token:}") String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("internal.token is not set: export INTERNAL_TOKEN with the shared service secret");
+        }
+        this.value = value;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    public boolean matches(String token) {
+        return token != null
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,226 @@
+package com.pruebatecnica.serviceclient;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+// Product lookups against product-service: every GET goes through the guard (circuit breaker and bulkhead)
+// and the hedger, on an instance picked by the selector. A 4xx means "no such product" (unknown or
+// inactive); any other failure is an outage and surfaces as ProductServiceUnavailableException.
+@Component
+@Slf4j
+public class ProductClient {
+
+    private static final String PRODUCT_SERVICE = "product-service";
+
+    private final ServiceInstanceSelector instanceSelector;
+    private final InternalHttpClient internalHttpClient;
+    private final ProductServiceGuard guard;
+    private final ProductRequestHedger hedger;
+    private final int maxBatchSize;
+
+    // max-batch-size must not exceed product-service's product.listing.max-batch-size
+    public ProductClient(ServiceInstanceSelector instanceSelector,
+                         InternalHttpClient internalHttpClient,
+                         ProductServiceGuard guard,
+                         ProductRequestHedger hedger,
+                         @Value("${product.client.max-batch-size:200}") int maxBatchSize) {
+        this.instanceSelector = instanceSelector;
+        this.internalHttpClient = internalHttpClient;
+        this.guard = guard;
+        this.hedger = hedger;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    // Null when the product is unknown or inactive
+    public ProductInfo getProduct(Long productId) {
+        try (ProductServiceGuard.Permit permit = guard.acquire()) {
+            try {
+                log.info("Fetching product info for ID {}", productId);
+                ApiResponse<?> response = fetch("/api/products/" + productId, permit).join();
+
+                if (response != null && response.isSuccess() && response.getData() instanceof Map<?, ?> productData) {
+                    return toProductInfo(productData);
+                }
+
+                log.warn("Product with ID {} not found or inactive", productId);
+                return null;
+
+            } catch (Exception e) {
+                if (unwrap(e) instanceof HttpClientErrorException clientError) {
+                    // product-service answers 404 for unknown and inactive products
+                    log.warn("Product with ID {} not found or inactive: {}", productId, clientError.getStatusCode());
+                    return null;
+                }
+                log.error("Error fetching product info for ID {}: {}", productId, unwrap(e).getMessage());
+                throw unavailable(e);
+            }
+        }
+    }
+
+    // Missing or inactive products are absent from the map
+    public Map<Long, ProductInfo> getProducts(Collection<Long> productIds) {
+        try {
+            return getProductsAsync(productIds).join();
+        } catch (CompletionException e) {
+            throw unavailable(e);
+        }
+    }
+
+    // One call per max-batch-size ids, sent on the shared client so the caller's thread is free until it joins.
+    // A 4xx yields no products for that chunk; any other failure completes the future with
+    // ProductServiceUnavailableException. A call rejected by the guard throws it right away
+    public CompletableFuture<Map<Long, ProductInfo>> getProductsAsync(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+
+        List<Long> ids = List.copyOf(productIds);
+        if (ids.size() <= maxBatchSize) {
+            return fetchBatch(ids);
+        }
+
+        List<CompletableFuture<Map<Long, ProductInfo>>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += maxBatchSize) {
+            chunks.add(fetchBatch(ids.subList(i, Math.min(i + maxBatchSize, ids.size()))));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    Map<Long, ProductInfo> products = new HashMap<>();
+                    chunks.forEach(chunk -> products.putAll(chunk.join()));
+                    return products;
+                });
+    }
+
+    private CompletableFuture<Map<Long, ProductInfo>> fetchBatch(List<Long> productIds) {
+        ProductServiceGuard.Permit permit = guard.acquire();
+        String ids = productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        log.info("Fetching {} products", productIds.size());
+
+        return fetch("/api/products/batch?ids=" + ids, permit)
+                .handle((response, error) -> {
+                    // The permit is held until the response arrives so the bulkhead counts the call
+                    try (permit) {
+                        if (error != null) {
+                            if (unwrap(error) instanceof HttpClientErrorException clientError) {
+                                log.warn("Products {} rejected by product service: {}", productIds, clientError.getStatusCode());
+                                return Map.<Long, ProductInfo>of();
+                            }
+                            log.error("Error fetching product info for IDs {}: {}", productIds, unwrap(error).getMessage());
+                            throw new CompletionException(unavailable(error));
+                        }
+
+                        Map<Long, ProductInfo> products = new HashMap<>();
+                        if (response != null && response.isSuccess() && response.getData() instanceof List<?> productList) {
+                            for (Object item : productList) {
+                                ProductInfo productInfo = toProductInfo((Map<?, ?>) item);
+                                products.put(productInfo.getId(), productInfo);
+                            }
+                        }
+                        return products;
+                    } catch (CompletionException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        log.error("Unexpected error fetching product info for IDs {}: {}", productIds, e.getMessage());
+                        throw new CompletionException(unavailable(e));
+                    }
+                });
+    }
+
+    // One GET against product-service, hedged to a second instance when hedging is enabled
+    @SuppressWarnings("rawtypes")
+    private CompletableFuture<ApiResponse> fetch(String path, ProductServiceGuard.Permit permit) {
+        ServiceInstanceSelector.Lease primary = acquireProductService();
+        if (primary == null) {
+            log.error("Product service not available");
+            return CompletableFuture.failedFuture(new IllegalStateException("No product-service instance available"));
+        }
+
+        CompletableFuture<ApiResponse> result = hedger.execute(
+                () -> send(primary, path),
+                () -> {
+                    ServiceInstanceSelector.Lease other = instanceSelector.acquireOther(PRODUCT_SERVICE, primary);
+                    return other != null ? send(other, path) : null;
+                });
+        return result.whenComplete((response, error) -> {
+            if (error != null && unwrap(error) instanceof Exception e) {
+                permit.recordFailure(e);
+            }
+        });
+    }
+
+    // Returns the client's own future so cancelling it (the losing hedge) aborts the exchange
+    @SuppressWarnings("rawtypes")
+    private CompletableFuture<ApiResponse> send(ServiceInstanceSelector.Lease instance, String path) {
+        String url = instance.getUrl() + path;
+        log.debug("GET {}", url);
+
+        CompletableFuture<ApiResponse> call = internalHttpClient.getAsync(url, ApiResponse.class);
+        call.whenComplete((response, error) -> {
+            try (instance) {
+                // A cancelled duplicate says nothing about the instance
+                if (error != null && !call.isCancelled() && unwrap(error) instanceof Exception e) {
+                    instance.recordFailure(e);
+                }
+            }
+        });
+        return call;
+    }
+
+    private ServiceInstanceSelector.Lease acquireProductService() {
+        try {
+            return instanceSelector.acquire(PRODUCT_SERVICE);
+        } catch (Exception e) {
+            log.error("Error resolving product service instances: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static ProductServiceUnavailableException unavailable(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof ProductServiceUnavailableException unavailable
+                ? unavailable
+                : new ProductServiceUnavailableException(cause);
+    }
+
+    private static ProductInfo toProductInfo(Map<?, ?> productData) {
+        return ProductInfo.builder()
+                .id(Long.valueOf(productData.get("id").toString()))
+                .name((String) productData.get("name"))
+                .description((String) productData.get("description"))
+                .imageUrl((String) productData.get("imageUrl"))
+                .priceCents((Integer) productData.get("priceCents"))
+                .currency((String) productData.get("currency"))
+                .isActive((Boolean) productData.get("isActive"))
+                .build();
+    }
+
+    // product-service's response envelope
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class ApiResponse<T> {
+        private boolean success;
+        private int httpStatus;
+        private String appCode;
+        private String message;
+        private T data;
+    }
+}
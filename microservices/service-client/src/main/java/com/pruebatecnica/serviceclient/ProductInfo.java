@@ -0,0 +1,21 @@
+package com.pruebatecnica.serviceclient;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A product as returned by product-service's /api/products endpoints
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductInfo {
+    private Long id;
+    private String name;
+    private String description;
+    private String imageUrl;
+    private Integer priceCents;
+    private String currency;
+    private Boolean isActive;
+}
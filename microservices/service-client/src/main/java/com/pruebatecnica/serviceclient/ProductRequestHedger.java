@@ -0,0 +1,212 @@
+package com.pruebatecnica.serviceclient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Opt-in request hedging for product-service lookups. If the primary call has not answered after the
+// configured latency percentile of recent calls, one duplicate is sent to another instance; the first
+// successful answer wins and the other call is cancelled. Every primary call earns budget-percent of a
+// hedge token (up to max-burst), so hedges never exceed that share of traffic even when everything is slow.
+@Component
+public class ProductRequestHedger {
+
+    private final boolean enabled;
+    private final ScheduledExecutorService scheduler;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesOverBudget;
+    private final DistributionSummary latencySaved;
+
+    @Value("${product.client.hedging.percentile:95}")
+    private double percentile;
+
+    @Value("${product.client.hedging.initial-delay-ms:50}")
+    private long initialDelayMs;
+
+    @Value("${product.client.hedging.min-delay-ms:5}")
+    private long minDelayMs;
+
+    @Value("${product.client.hedging.budget-percent:5}")
+    private double budgetPercent;
+
+    @Value("${product.client.hedging.max-burst:10}")
+    private double maxBurst;
+
+    // Ring of recent successful call latencies in ms; guarded by this
+    private final long[] samples;
+    private int sampleIndex;
+    private int sampleCount;
+    private int samplesSinceRecompute;
+    private volatile long delayMs = -1;
+    private double tokens;
+
+    public ProductRequestHedger(MeterRegistry meterRegistry,
+                                @Value("${product.client.hedging.enabled:false}") boolean enabled,
+                                @Value("${product.client.hedging.sample-size:1000}") int sampleSize) {
+        this.enabled = enabled;
+        this.samples = new long[Math.max(10, sampleSize)];
+        this.scheduler = enabled
+                ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "product-hedger");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+
+        this.hedgesSent = Counter.builder("product.client.hedge.sent").register(meterRegistry);
+        this.hedgesWon = Counter.builder("product.client.hedge.won").register(meterRegistry);
+        this.hedgesOverBudget = Counter.builder("product.client.hedge.over-budget").register(meterRegistry);
+        this.latencySaved = DistributionSummary.builder("product.client.hedge.latency-saved")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("product.client.hedge.delay", this, hedger -> hedger.currentDelayMs()).register(meterRegistry);
+    }
+
+    // hedge may return null when there is no other instance to send the duplicate to. The returned future
+    // fails only when every call that was sent failed; a 4xx answer is final and is not hedged
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> primary, Supplier<CompletableFuture<T>> hedge) {
+        long start = System.nanoTime();
+        CompletableFuture<T> primaryCall = primary.get();
+        if (!enabled) {
+            return primaryCall;
+        }
+        earnToken();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> hedgeCall = new AtomicReference<>();
+
+        primaryCall.whenComplete((value, error) -> {
+            if (error == null) {
+                recordLatency(elapsedMs(start));
+                if (result.complete(value)) {
+                    cancel(hedgeCall.get());
+                }
+                return;
+            }
+            CompletableFuture<T> other = hedgeCall.get();
+            if (other == null || other.isCompletedExceptionally() || isFinal(error)) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        long delay = currentDelayMs();
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (primaryCall.isDone() || result.isDone()) {
+                return;
+            }
+            if (!spendToken()) {
+                hedgesOverBudget.increment();
+                return;
+            }
+            CompletableFuture<T> hedgedCall = hedge.get();
+            if (hedgedCall == null) {
+                return;
+            }
+            hedgesSent.increment();
+            hedgeCall.set(hedgedCall);
+            long hedgeStart = System.nanoTime();
+
+            hedgedCall.whenComplete((value, error) -> {
+                if (error == null) {
+                    recordLatency(elapsedMs(hedgeStart));
+                    if (result.complete(value)) {
+                        hedgesWon.increment();
+                        latencySaved.record(estimateSavedMs(elapsedMs(start)));
+                        primaryCall.cancel(true);
+                    }
+                } else if (primaryCall.isCompletedExceptionally()) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+
+        result.whenComplete((value, error) -> timer.cancel(false));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static boolean isFinal(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof HttpClientErrorException;
+    }
+
+    private static void cancel(CompletableFuture<?> call) {
+        if (call != null) {
+            call.cancel(true);
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private synchronized void earnToken() {
+        tokens = Math.min(maxBurst, tokens + budgetPercent / 100.0);
+    }
+
+    private synchronized boolean spendToken() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private long currentDelayMs() {
+        long delay = delayMs;
+        return delay >= 0 ? delay : initialDelayMs;
+    }
+
+    private synchronized void recordLatency(long latencyMs) {
+        samples[sampleIndex] = latencyMs;
+        sampleIndex = (sampleIndex + 1) % samples.length;
+        if (sampleCount < samples.length) {
+            sampleCount++;
+        }
+
+        // Re-sorting on every call would cost more than the hedging saves; a tenth of the window is enough
+        if (++samplesSinceRecompute >= samples.length / 10) {
+            samplesSinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            delayMs = Math.max(minDelayMs, sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        }
+    }
+
+    // The cancelled primary's latency is unknown; estimate it as the mean of recent calls that took at least
+    // as long as the hedged call did
+    private synchronized long estimateSavedMs(long answeredAfterMs) {
+        long sum = 0;
+        int count = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            if (samples[i] >= answeredAfterMs) {
+                sum += samples[i];
+                count++;
+            }
+        }
+        return count > 0 ? Math.max(0, sum / count - answeredAfterMs) : 0;
+    }
+}
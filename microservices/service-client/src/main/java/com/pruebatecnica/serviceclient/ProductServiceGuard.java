@@ -0,0 +1,212 @@
+package com.pruebatecnica.serviceclient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Circuit breaker plus bulkhead in front of product-service. The bulkhead caps concurrent calls so a slow
+// product-service can only tie up that many request threads; the breaker tracks the outcome of the last
+// window-size calls (errors and calls slower than slow-call-ms count as failures) and, past the failure
+// rate, rejects calls outright for open-ms before letting a few trial calls through to probe recovery.
+// Rejected calls fail fast with ProductServiceUnavailableException instead of waiting on the network.
+@Component
+@Slf4j
+public class ProductServiceGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean enabled;
+    private final Semaphore bulkhead;
+    private final MeterRegistry meterRegistry;
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadFullRejections;
+    private final Counter slowCalls;
+
+    @Value("${product.client.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${product.client.circuit.failure-rate-percent:50}")
+    private int failureRatePercent;
+
+    @Value("${product.client.circuit.slow-call-ms:2000}")
+    private long slowCallMs;
+
+    @Value("${product.client.circuit.open-ms:10000}")
+    private long openMs;
+
+    @Value("${product.client.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${product.client.bulkhead.max-wait-ms:0}")
+    private long maxWaitMs;
+
+    // Ring of the last outcomes while CLOSED; guarded by this
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenAdmitted;
+    private int halfOpenSucceeded;
+
+    public ProductServiceGuard(MeterRegistry meterRegistry,
+                               @Value("${product.client.guard.enabled:true}") boolean enabled,
+                               @Value("${product.client.circuit.window-size:20}") int windowSize,
+                               @Value("${product.client.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+
+        this.circuitOpenRejections = Counter.builder("product.client.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        this.bulkheadFullRejections = Counter.builder("product.client.rejected").tag("reason", "bulkhead_full").register(meterRegistry);
+        this.slowCalls = Counter.builder("product.client.slow-calls").register(meterRegistry);
+        Gauge.builder("product.client.circuit.state", this, guard -> guard.state.ordinal()).register(meterRegistry);
+        Gauge.builder("product.client.bulkhead.available", bulkhead, Semaphore::availablePermits).register(meterRegistry);
+    }
+
+    // Must be closed once the call is over; throws ProductServiceUnavailableException when the call is rejected
+    public Permit acquire() {
+        if (!enabled) {
+            return new Permit(false, false);
+        }
+
+        Permit permit = admit();
+        if (permit == null) {
+            circuitOpenRejections.increment();
+            throw new ProductServiceUnavailableException();
+        }
+
+        boolean acquired;
+        try {
+            acquired = maxWaitMs > 0 ? bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS) : bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            cancelTrial(permit.trial);
+            bulkheadFullRejections.increment();
+            throw new ProductServiceUnavailableException();
+        }
+        return permit;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private synchronized Permit admit() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMs) {
+                return null;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenAdmitted >= halfOpenCalls) {
+                return null;
+            }
+            halfOpenAdmitted++;
+            return new Permit(true, true);
+        }
+        return new Permit(true, false);
+    }
+
+    private synchronized void cancelTrial(boolean trial) {
+        if (trial && state == State.HALF_OPEN) {
+            halfOpenAdmitted--;
+        }
+    }
+
+    private synchronized void onResult(boolean trial, boolean failed) {
+        if (state == State.HALF_OPEN) {
+            // Calls admitted before the circuit opened don't say anything about recovery
+            if (!trial) {
+                return;
+            }
+            if (failed) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN || trial) {
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRatePercent * windowCount) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        log.warn("Product service circuit {} -> {} ({} of last {} calls failed)", state, next, windowFailures, windowCount);
+        meterRegistry.counter("product.client.circuit.transitions", "from", state.name(), "to", next.name()).increment();
+
+        state = next;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        halfOpenAdmitted = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final boolean guarded;
+        private final boolean trial;
+        private final long startNanos = System.nanoTime();
+        private boolean failed;
+
+        private Permit(boolean guarded, boolean trial) {
+            this.guarded = guarded;
+            this.trial = trial;
+        }
+
+        // 4xx answers mean product-service is healthy, so they don't count as failures
+        public void recordFailure(Exception e) {
+            if (!(e instanceof HttpClientErrorException)) {
+                failed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!guarded) {
+                return;
+            }
+            bulkhead.release();
+            boolean slow = System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+            if (slow) {
+                slowCalls.increment();
+            }
+            onResult(trial, failed || slow);
+        }
+    }
+}
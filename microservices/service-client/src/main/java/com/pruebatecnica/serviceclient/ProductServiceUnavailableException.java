@@ -0,0 +1,14 @@
+package com.pruebatecnica.serviceclient;
+
+// Thrown without calling product-service when its circuit is open or its bulkhead is full, and when a call
+// fails for any reason other than a 4xx, so an outage never reads as "product not found"
+public class ProductServiceUnavailableException extends IllegalStateException {
+
+    public ProductServiceUnavailableException() {
+        super("Servicio de productos temporalmente no disponible");
+    }
+
+    public ProductServiceUnavailableException(Throwable cause) {
+        super("Servicio de productos temporalmente no disponible", cause);
+    }
+}
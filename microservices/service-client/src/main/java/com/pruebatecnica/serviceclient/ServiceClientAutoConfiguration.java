@@ -0,0 +1,11 @@
+package com.pruebatecnica.serviceclient;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+
+// Registers the shared client components in every service that has this module on its classpath,
+// without widening the service's own component scan
+@AutoConfiguration
+@ComponentScan
+public class ServiceClientAutoConfiguration {
+}
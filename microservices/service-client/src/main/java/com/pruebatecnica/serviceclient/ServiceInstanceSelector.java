@@ -0,0 +1,194 @@
+package com.pruebatecnica.serviceclient;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Client-side instance selection for calls to other services. Instance lists are cached per service and
+// refreshed when the discovery client reports a registry refresh (or after ttl-ms as a fallback), so the
+// request path never queries the registry. Each call picks the less busy of two random instances
+// (power of two choices on in-flight requests); an instance that fails failure-threshold times in a row
+// is ejected for ejection-ms. If every instance is ejected, the whole list is used again.
+@Component
+@Slf4j
+public class ServiceInstanceSelector {
+    
+    private final DiscoveryClient discoveryClient;
+    private final Map<String, ServiceInstances> services = new ConcurrentHashMap<>();
+    
+    @Value("${client.instance-selector.ttl-ms:30000}")
+    private long ttlMs;
+    
+    @Value("${client.instance-selector.failure-threshold:3}")
+    private int failureThreshold;
+    
+    @Value("${client.instance-selector.ejection-ms:30000}")
+    private long ejectionMs;
+    
+    public ServiceInstanceSelector(DiscoveryClient discoveryClient) {
+        this.discoveryClient = discoveryClient;
+    }
+    
+    // Returns null when no instance is registered; the lease must be closed once the call is done
+    public Lease acquire(String serviceId) {
+        ServiceInstances cached = services.get(serviceId);
+        if (cached == null || System.currentTimeMillis() - cached.loadedAt > ttlMs) {
+            cached = refresh(serviceId);
+        }
+        if (cached.instances.isEmpty()) {
+            log.warn("No instances of {} found", serviceId);
+            return null;
+        }
+        
+        InstanceState chosen = choose(cached.instances);
+        chosen.inFlight.incrementAndGet();
+        return new Lease(chosen);
+    }
+    
+    // For a duplicate (hedged) call: an instance other than the one already serving it, or null if there is none
+    public Lease acquireOther(String serviceId, Lease busy) {
+        ServiceInstances cached = services.get(serviceId);
+        if (cached == null) {
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        List<InstanceState> others = new ArrayList<>(cached.instances.size());
+        for (InstanceState instance : cached.instances) {
+            if (instance != busy.instance && instance.ejectedUntil <= now) {
+                others.add(instance);
+            }
+        }
+        if (others.isEmpty()) {
+            return null;
+        }
+        
+        InstanceState chosen = choose(others);
+        chosen.inFlight.incrementAndGet();
+        return new Lease(chosen);
+    }
+    
+    @EventListener(HeartbeatEvent.class)
+    public void onRegistryRefresh() {
+        services.keySet().forEach(this::refresh);
+    }
+    
+    private InstanceState choose(List<InstanceState> instances) {
+        long now = System.currentTimeMillis();
+        List<InstanceState> candidates = new ArrayList<>(instances.size());
+        for (InstanceState instance : instances) {
+            if (instance.ejectedUntil <= now) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        InstanceState a = candidates.get(first);
+        InstanceState b = candidates.get(second);
+        return a.inFlight.get() <= b.inFlight.get() ? a : b;
+    }
+    
+    // Keeps the counters of instances that are still registered
+    private ServiceInstances refresh(String serviceId) {
+        Map<String, InstanceState> previous = new HashMap<>();
+        ServiceInstances current = services.get(serviceId);
+        if (current != null) {
+            current.instances.forEach(state -> previous.put(state.key, state));
+        }
+        
+        List<InstanceState> instances = new ArrayList<>();
+        try {
+            List<ServiceInstance> registered = discoveryClient.getInstances(serviceId);
+            if (registered != null) {
+                for (ServiceInstance instance : registered) {
+                    URI uri = instance.getUri();
+                    String key = instance.getInstanceId() != null ? instance.getInstanceId() : uri.toString();
+                    InstanceState state = previous.get(key);
+                    instances.add(state != null && state.uri.equals(uri) ? state : new InstanceState(key, uri));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting instances of {}: {}", serviceId, e.getMessage());
+            if (current != null) {
+                return current;
+            }
+        }
+        
+        ServiceInstances refreshed = new ServiceInstances(List.copyOf(instances), System.currentTimeMillis());
+        services.put(serviceId, refreshed);
+        return refreshed;
+    }
+    
+    private record ServiceInstances(List<InstanceState> instances, long loadedAt) {
+    }
+    
+    private static final class InstanceState {
+        private final String key;
+        private final URI uri;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long ejectedUntil;
+        
+        private InstanceState(String key, URI uri) {
+            this.key = key;
+            this.uri = uri;
+        }
+    }
+    
+    public final class Lease implements AutoCloseable {
+        private final InstanceState instance;
+        private boolean failed;
+        
+        private Lease(InstanceState instance) {
+            this.instance = instance;
+        }
+        
+        public String getUrl() {
+            return instance.uri.toString();
+        }
+        
+        // 4xx answers mean the instance is healthy, so they don't count towards ejection
+        public void recordFailure(Exception e) {
+            if (!(e instanceof HttpClientErrorException)) {
+                failed = true;
+            }
+        }
+        
+        @Override
+        public void close() {
+            instance.inFlight.decrementAndGet();
+            if (!failed) {
+                instance.consecutiveFailures.set(0);
+            } else if (instance.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                instance.consecutiveFailures.set(0);
+                instance.ejectedUntil = System.currentTimeMillis() + ejectionMs;
+                log.warn("Ejecting instance {} for {} ms after {} consecutive failures", instance.key, ejectionMs, failureThreshold);
+            }
+        }
+    }
+}
@@ -7,6 +7,16 @@ echo Iniciando todos los microservicios en paralelo...
 echo (Menos estable pero mas rapido para desarrollo)
 echo.
 
+if "%INTERNAL_TOKEN%"=="" (
+    echo.
+    echo ERROR: la variable INTERNAL_TOKEN no esta definida
+    echo Define el secreto compartido entre servicios antes de iniciar, por ejemplo:
+    echo   set INTERNAL_TOKEN=un-valor-largo-y-aleatorio
+    echo.
+    pause
+    exit /b 1
+)
+
 start cmd /k "cd /d microservices\discovery-server && title Discovery-Server-8761 && mvn spring-boot:run"
 start cmd /k "cd /d microservices\auth-service && title Auth-Service-8081 && mvn spring-boot:run"
 start cmd /k "cd /d microservices\product-service && title Product-Service-8082 && mvn spring-boot:run"
@@ -3,6 +3,16 @@ echo ========================================
 echo  INICIANDO MICROSERVICIOS - ORDEN CORRECTO
 echo ========================================
 
+if "%INTERNAL_TOKEN%"=="" (
+    echo.
+    echo ERROR: la variable INTERNAL_TOKEN no esta definida
+    echo Define el secreto compartido entre servicios antes de iniciar, por ejemplo:
+    echo   set INTERNAL_TOKEN=un-valor-largo-y-aleatorio
+    echo.
+    pause
+    exit /b 1
+)
+
 echo.
 echo [1/4] Iniciando Discovery Server (Eureka) - Puerto 8761...
 echo ========================================
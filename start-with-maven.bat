@@ -20,6 +20,16 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
+if "%INTERNAL_TOKEN%"=="" (
+    echo.
+    echo ERROR: la variable INTERNAL_TOKEN no esta definida
+    echo Define el secreto compartido entre servicios antes de iniciar, por ejemplo:
+    echo   set INTERNAL_TOKEN=un-valor-largo-y-aleatorio
+    echo.
+    pause
+    exit /b 1
+)
+
 echo.
 echo ✅ Maven encontrado. Compilando microservicios...
 echo ========================================